@@ -0,0 +1,24 @@
+package Weeter;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so each result comes with its allocation rate (gc.alloc.rate.norm is the
+ * bytes allocated per operation). Pass a regular expression to run only the matching benchmarks.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "Weeter\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
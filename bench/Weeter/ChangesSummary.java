@@ -0,0 +1,122 @@
+package Weeter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * What the tests used to check in a person changes response, before {@link ResponseSpec}: whether it has the
+ * "changes" key, how many changes it holds, and whether the first change has a "key". It is kept as a baseline for
+ * {@link ParseBenchmark}.
+ *
+ * The body is read with a streaming {@link JsonReader} straight off the stream, skipping over everything else, so
+ * neither the body text nor a tree of maps and lists is ever built.
+ */
+public class ChangesSummary {
+
+    private final int statusCode;
+    private final boolean hasChanges;
+    private final int changeCount;
+    private final boolean firstChangeHasKey;
+
+    public ChangesSummary(int statusCode, boolean hasChanges, int changeCount, boolean firstChangeHasKey)
+    {
+        this.statusCode = statusCode;
+        this.hasChanges = hasChanges;
+        this.changeCount = changeCount;
+        this.firstChangeHasKey = firstChangeHasKey;
+    }
+
+    /**
+     * Reads the summary from a person changes body in one pass.
+     */
+    public static ChangesSummary read(int statusCode, Reader body) throws IOException
+    {
+        JsonReader reader = new JsonReader(body);
+
+        boolean hasChanges = false;
+        int changeCount = 0;
+        boolean firstChangeHasKey = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+
+            if (!"changes".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+
+            hasChanges = true;
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (changeCount == 0) {
+                    firstChangeHasKey = hasName(reader, "key");
+                }
+                else {
+                    reader.skipValue();
+                }
+                changeCount++;
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+
+        return new ChangesSummary(statusCode, hasChanges, changeCount, firstChangeHasKey);
+    }
+
+    /**
+     * Consumes the next value and returns whether it is an object with the given member.
+     */
+    private static boolean hasName(JsonReader reader, String name) throws IOException
+    {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return false;
+        }
+
+        boolean found = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (name.equals(reader.nextName())) {
+                found = true;
+            }
+            reader.skipValue();
+        }
+        reader.endObject();
+
+        return found;
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    /**
+     * Whether the body has a "changes" key at the top level.
+     */
+    public boolean hasChanges()
+    {
+        return hasChanges;
+    }
+
+    public int getChangeCount()
+    {
+        return changeCount;
+    }
+
+    /**
+     * Whether the first entry in "changes" has a "key". False when there are no changes.
+     */
+    public boolean firstChangeHasKey()
+    {
+        return firstChangeHasKey;
+    }
+}
@@ -0,0 +1,67 @@
+package Weeter;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fixed costs of a request before anything goes over the wire.
+ *
+ * createClient - building and closing an HttpClient, as every test used to do for every request
+ * createPooledClient - building and closing a {@link MovieDbClient}, which the suite now does once per run
+ * buildUrl - putting the URL together from the base URL, the person ID and the token parameter
+ * buildRequest - the same plus the HttpGet, which parses the URL into a URI
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientBenchmark {
+
+    // Not final, so the URL cannot be folded into a constant
+    private String baseUrl = "https://api.themoviedb.org/3/";
+    private String tokenParam = "?api_key=ffffffffffffffffffffffffffffffff";
+    private int personId = 1245;
+
+    @Benchmark
+    public CloseableHttpClient createClient() throws IOException
+    {
+        CloseableHttpClient client = HttpClientBuilder.create().build();
+        client.close();
+        return client;
+    }
+
+    @Benchmark
+    public MovieDbClient createPooledClient() throws IOException
+    {
+        MovieDbClient client = new MovieDbClient(new ClientSettings());
+        client.close();
+        return client;
+    }
+
+    @Benchmark
+    public String buildUrl()
+    {
+        return baseUrl + "person/" + personId + "/changes" + tokenParam;
+    }
+
+    @Benchmark
+    public HttpGet buildRequest()
+    {
+        return new HttpGet(baseUrl + "person/" + personId + "/changes" + tokenParam);
+    }
+}
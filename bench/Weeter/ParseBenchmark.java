@@ -0,0 +1,132 @@
+package Weeter;
+
+import com.google.gson.Gson;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and parsing a person changes body, the way the tests used to and the ways they do now.
+ *
+ * The bodies come from {@link PersonChangesFixture} in three sizes: the default one day window (4 items), a full
+ * 14 day window (56 items) and about eight months (1000 items). Each reader gets a fresh stream over the same bytes,
+ * so only the reading and parsing is measured.
+ *
+ * bufferedReader - the original body read: BufferedReader.readLine into a StringBuffer
+ * entityToString - the body read into a String the way {@link ApiResponse} does it
+ * gsonMap - the original parse: the body read line by line, then a new Gson().fromJson(body, Map.class)
+ * sharedGsonMap - the same with one shared Gson, to separate the cost of building a Gson from the parse
+ * jsonReaderSummary - the streaming {@link ChangesSummary} the tests used before specs, straight off the stream
+ * typedBinding - {@link PersonChanges#HANDLER} binding straight off the response stream
+ * specValidation - the tests' compiled {@link ResponseSpec} for a changes response, checked straight off the stream
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    private static final Gson SHARED_GSON = new Gson();
+
+    private static final ResponseValidator CHANGES = new ResponseSpec()
+            .status(200)
+            .require("changes")
+            .arraySize("changes", 0, Integer.MAX_VALUE)
+            .require("changes[*].key")
+            .compile();
+
+    @Param({"4", "56", "1000"})
+    public int itemCount;
+
+    private byte[] body;
+
+    @Setup
+    public void createBody()
+    {
+        body = PersonChangesFixture.personChanges(1245, itemCount).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String bufferedReader() throws IOException
+    {
+        return readLines();
+    }
+
+    @Benchmark
+    public ApiResponse entityToString() throws IOException
+    {
+        return ApiResponse.HANDLER.handleResponse(response());
+    }
+
+    @Benchmark
+    public Map gsonMap() throws IOException
+    {
+        return new Gson().fromJson(readLines(), Map.class);
+    }
+
+    @Benchmark
+    public Map sharedGsonMap() throws IOException
+    {
+        return SHARED_GSON.fromJson(readLines(), Map.class);
+    }
+
+    @Benchmark
+    public ChangesSummary jsonReaderSummary() throws IOException
+    {
+        return ChangesSummary.read(200, new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public JsonResponse<PersonChanges> typedBinding() throws IOException
+    {
+        return PersonChanges.HANDLER.handleResponse(response());
+    }
+
+    @Benchmark
+    public ValidationResult specValidation() throws IOException
+    {
+        return CHANGES.handler().handleResponse(response());
+    }
+
+    private String readLines() throws IOException
+    {
+        BufferedReader rd = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body)));
+
+        StringBuffer result = new StringBuffer();
+        String line;
+        while ((line = rd.readLine()) != null) {
+            result.append(line);
+        }
+        return result.toString();
+    }
+
+    private HttpResponse response()
+    {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+}
@@ -0,0 +1,50 @@
+package Weeter;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The status code and body of a Movie DB API response, read fully so the underlying connection can go straight
+ * back to the pool.
+ */
+public class ApiResponse {
+
+    /**
+     * Reads the whole body as UTF-8. The client consumes whatever is left of the entity once the handler returns.
+     */
+    public static final ResponseHandler<ApiResponse> HANDLER = new ResponseHandler<ApiResponse>() {
+
+        @Override
+        public ApiResponse handleResponse(HttpResponse response) throws IOException {
+
+            HttpEntity entity = response.getEntity();
+            String body = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+
+            return new ApiResponse(response.getStatusLine().getStatusCode(), body);
+        }
+    };
+
+    private final int statusCode;
+    private final String body;
+
+    public ApiResponse(int statusCode, String body)
+    {
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    public String getBody()
+    {
+        return body;
+    }
+}
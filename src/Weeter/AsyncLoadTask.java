@@ -0,0 +1,15 @@
+package Weeter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One request made by a {@link LoadGenerator} without holding a thread while it is in flight.
+ */
+public interface AsyncLoadTask {
+
+    /**
+     * Starts the request and returns a future for its status code, which completes exceptionally if the response
+     * was not what was expected.
+     */
+    CompletableFuture<Integer> start() throws Exception;
+}
@@ -0,0 +1,412 @@
+package Weeter;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A non-blocking client for The Movie DB API, built on the JDK's java.net.http.HttpClient.
+ *
+ * No thread waits on a request in flight: requests are sent with sendAsync, the rate limiter's place in line is
+ * taken with {@link RateLimiter#reserve()} and waited out on a timer rather than by parking, and a 429 Too Many
+ * Requests is retried the same way. A few threads can then keep thousands of requests in flight, where
+ * {@link MovieDbClient} needs a thread for each.
+ *
+ * Each body arrives whole and is then handed to the same {@link ResponseHandler}s {@link MovieDbClient} uses, as an
+ * Apache HttpResponse, on one of the client's threads. Bodies are asked for gzip or deflate compressed and
+ * decompressed as the handler reads them, and the bytes are counted in a {@link TransferStats}. This client does not
+ * go through the response cache, a cassette or hedging.
+ *
+ * The connect and socket timeouts of the settings bound how long a connection takes to be made and how long the
+ * response headers take to arrive, and a request that fails either completes with an HttpTimeoutException. A request
+ * still running at its total deadline completes with a TimeoutException, and whatever it was doing is cancelled: a
+ * wait for the rate limiter ends without the request being sent, and an exchange on the wire is aborted.
+ *
+ * With coalescing turned on, identical GETs in flight at the same time share one request, as with
+ * {@link MovieDbClient}.
+ *
+ * It reads the same settings as {@link MovieDbClient}, with moviedb.async.threads for the number of threads.
+ */
+public class AsyncMovieDbClient implements MovieDbTransport {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile AsyncMovieDbClient shared;
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final RateLimiter limiter;
+    private final int maxRetries;
+    private final boolean compressionEnabled;
+    private final int socketTimeoutMillis;
+    private final long totalTimeoutMillis;
+    private final SingleFlight singleFlight;
+    private final TransferStats transferStats = new TransferStats();
+    private final RequestTimings requestTimings = new RequestTimings();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Returns the async client shared by the whole suite, creating it from the system properties on first use. It
+     * draws on the same rate budget as {@link MovieDbClient#shared()}.
+     */
+    public static AsyncMovieDbClient shared()
+    {
+        AsyncMovieDbClient result = shared;
+        if (result == null) {
+            synchronized (SHARED_LOCK) {
+                result = shared;
+                if (result == null) {
+                    result = new AsyncMovieDbClient(ClientSettings.fromSystemProperties());
+                    shared = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public AsyncMovieDbClient(ClientSettings settings)
+    {
+        this.limiter = settings.getRateLimiter();
+        this.maxRetries = settings.getMaxRetries();
+        this.compressionEnabled = settings.isCompressionEnabled();
+        this.socketTimeoutMillis = settings.getSocketTimeoutMillis();
+        this.totalTimeoutMillis = settings.getTotalTimeoutMillis();
+        this.singleFlight = settings.isCoalescingEnabled() ? new SingleFlight() : null;
+
+        executor = Executors.newFixedThreadPool(settings.getAsyncThreads(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "moviedb-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .executor(executor)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (settings.getConnectTimeoutMillis() > 0) {
+            builder.connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMillis()));
+        }
+        client = builder.build();
+    }
+
+    /**
+     * Starts a GET against the given URL. If the request fails the future completes with its IOException, wrapped
+     * in an UncheckedIOException if it came from the handler. With coalescing on, the result may be shared with other
+     * callers of the same URL and handler.
+     */
+    @Override
+    public <T> CompletableFuture<T> getAsync(final String url, final ResponseHandler<? extends T> handler)
+    {
+        if (singleFlight == null) {
+            return start(url, handler);
+        }
+
+        return singleFlight.executeAsync(url, handler, new Supplier<CompletableFuture<T>>() {
+
+            @Override
+            public CompletableFuture<T> get() {
+                return start(url, handler);
+            }
+        });
+    }
+
+    /**
+     * Sends the request and runs the handler on the response once it has arrived whole.
+     */
+    private <T> CompletableFuture<T> start(String url, final ResponseHandler<? extends T> handler)
+    {
+        final URI uri = URI.create(url);
+        final String tag = RequestTag.current();
+        final long start = System.nanoTime();
+        final Steps steps = new Steps();
+
+        CompletableFuture<T> result = send(uri, 0, steps).thenApplyAsync(new Function<HttpResponse<byte[]>, T>() {
+
+            @Override
+            public T apply(HttpResponse<byte[]> response) {
+
+                String previous = RequestTag.set(tag);
+                try {
+                    return handler.handleResponse(adapt(response, uri, tag));
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                finally {
+                    RequestTag.restore(previous);
+                }
+            }
+        }, executor);
+
+        if (totalTimeoutMillis > 0) {
+            result = result.orTimeout(totalTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        return result.whenComplete(new BiConsumer<T, Throwable>() {
+
+            @Override
+            public void accept(T value, Throwable error) {
+                steps.finish();
+                requestTimings.record(tag, System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Returns the wire and decoded byte counts of the responses, in total, per endpoint and per request tag.
+     */
+    public TransferStats getTransferStats()
+    {
+        return transferStats;
+    }
+
+    /**
+     * Returns the latency of the requests, from being started until their handler returned, per request tag.
+     */
+    public RequestTimings getRequestTimings()
+    {
+        return requestTimings;
+    }
+
+    /**
+     * Returns the counts of requests made and coalesced, or null when coalescing is off.
+     */
+    public SingleFlight getSingleFlight()
+    {
+        return singleFlight;
+    }
+
+    /**
+     * How many requests are on the wire right now, not counting those waiting for the rate limiter.
+     */
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    /**
+     * The most requests that have been on the wire at once.
+     */
+    public int getMaxInFlight()
+    {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Takes a place in the rate limiter's line and sends the request when it comes up.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> send(URI uri, int attempt, Steps steps)
+    {
+        // A retry after the request has completed would only take a permit it cannot use
+        if (steps.isFinished()) {
+            return expired();
+        }
+        return sendAfter(uri, attempt, limiter == null ? 0 : limiter.reserve(), steps);
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> sendAfter(final URI uri, final int attempt, long delayNanos, final Steps steps)
+    {
+        if (delayNanos > 0) {
+
+            Runnable nothing = new Runnable() {
+
+                @Override
+                public void run() {
+                }
+            };
+
+            CompletableFuture<Void> wait = CompletableFuture.runAsync(nothing,
+                    CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor));
+            if (!steps.track(wait)) {
+                return expired();
+            }
+
+            return wait.thenCompose(new Function<Void, CompletionStage<HttpResponse<byte[]>>>() {
+
+                @Override
+                public CompletionStage<HttpResponse<byte[]>> apply(Void ignored) {
+                    return sendAfter(uri, attempt, 0, steps);
+                }
+            });
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+        if (socketTimeoutMillis > 0) {
+            request.timeout(Duration.ofMillis(socketTimeoutMillis));
+        }
+        if (compressionEnabled) {
+            request.header("Accept-Encoding", "gzip,deflate");
+        }
+
+        CompletableFuture<HttpResponse<byte[]>> exchange;
+        synchronized (steps) {
+
+            // Once the request has completed, at its deadline or otherwise, it must not go out at all
+            if (steps.isFinished()) {
+                return expired();
+            }
+
+            int count = inFlight.incrementAndGet();
+            for (int max = maxInFlight.get(); count > max && !maxInFlight.compareAndSet(max, count); max = maxInFlight.get()) {
+                // Retry until our count is recorded or a larger one is
+            }
+
+            exchange = client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            steps.track(exchange);
+        }
+
+        return exchange
+                .whenComplete(new BiConsumer<HttpResponse<byte[]>, Throwable>() {
+
+                    @Override
+                    public void accept(HttpResponse<byte[]> response, Throwable error) {
+                        inFlight.decrementAndGet();
+                    }
+                })
+                .thenCompose(new Function<HttpResponse<byte[]>, CompletionStage<HttpResponse<byte[]>>>() {
+
+                    @Override
+                    public CompletionStage<HttpResponse<byte[]>> apply(HttpResponse<byte[]> response) {
+
+                        if (response.statusCode() != TOO_MANY_REQUESTS || attempt >= maxRetries) {
+                            return CompletableFuture.completedFuture(response);
+                        }
+
+                        long backOffNanos = RateLimitedExec.retryAfterNanos(response.headers().firstValue("Retry-After").orElse(null), attempt);
+                        if (limiter == null) {
+                            return sendAfter(uri, attempt + 1, backOffNanos, steps);
+                        }
+
+                        limiter.backOff(backOffNanos);
+                        return send(uri, attempt + 1, steps);
+                    }
+                });
+    }
+
+    private static <T> CompletableFuture<T> expired()
+    {
+        return CompletableFuture.failedFuture(new TimeoutException("The request's deadline passed before it was sent"));
+    }
+
+    /**
+     * The step one request is on, a wait for the rate limiter or an exchange on the wire, so it can be cancelled once
+     * the request has completed. The request completes at its total deadline if it has not before, so whatever is
+     * still running then is cancelled, and no later step is started.
+     */
+    private static class Steps {
+
+        private CompletableFuture<?> step;
+        private boolean finished;
+
+        /**
+         * Makes the step the one to cancel, or cancels it at once and returns false if the request has completed.
+         */
+        synchronized boolean track(CompletableFuture<?> next)
+        {
+            if (finished) {
+                next.cancel(true);
+                return false;
+            }
+
+            step = next;
+            return true;
+        }
+
+        synchronized boolean isFinished()
+        {
+            return finished;
+        }
+
+        /**
+         * Called once the request has completed, whichever way, to cancel the step it was on.
+         */
+        synchronized void finish()
+        {
+            finished = true;
+            if (step != null) {
+                step.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Turns the JDK response into an Apache one, decompressing and counting the body as it is read.
+     */
+    private org.apache.http.HttpResponse adapt(HttpResponse<byte[]> response, URI uri, String tag)
+    {
+        int statusCode = response.statusCode();
+        BasicHttpResponse result = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode,
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, null));
+
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            if (!header.getKey().startsWith(":")) {
+                for (String value : header.getValue()) {
+                    result.addHeader(header.getKey(), value);
+                }
+            }
+        }
+
+        String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+
+        TransferStats.Counts[] counters = transferStats.countersFor(TransferStats.endpointOf(uri.getRawPath()), tag);
+        for (TransferStats.Counts counts : counters) {
+            counts.addNetworkResponse(encoding != null);
+            counts.addResponse();
+        }
+
+        ByteArrayEntity body = new ByteArrayEntity(response.body());
+        body.setContentType(response.headers().firstValue("Content-Type").orElse(null));
+
+        HttpEntity entity = new CountingEntity(body, counters, true);
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            entity = new GzipDecompressingEntity(entity);
+        }
+        else if ("deflate".equalsIgnoreCase(encoding)) {
+            entity = new DeflateDecompressingEntity(entity);
+        }
+
+        result.setEntity(new CountingEntity(entity, counters, false));
+        return result;
+    }
+}
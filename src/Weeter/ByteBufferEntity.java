@@ -0,0 +1,99 @@
+package Weeter;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A repeatable entity whose content is read straight out of a byte buffer, such as a slice of a memory-mapped file,
+ * without copying it onto the heap first.
+ */
+class ByteBufferEntity extends AbstractHttpEntity {
+
+    private final ByteBuffer content;
+
+    ByteBufferEntity(ByteBuffer content)
+    {
+        this.content = content.slice();
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+        return true;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+        return content.remaining();
+    }
+
+    @Override
+    public InputStream getContent()
+    {
+        final ByteBuffer buffer = content.duplicate();
+
+        return new InputStream() {
+
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+
+                if (length == 0) {
+                    return 0;
+                }
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+
+                int count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public long skip(long count) {
+
+                int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+                buffer.position(buffer.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException
+    {
+        ByteBuffer buffer = content.duplicate();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+
+        byte[] chunk = new byte[OUTPUT_BUFFER_SIZE];
+        while (buffer.hasRemaining()) {
+            int count = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, count);
+            out.write(chunk, 0, count);
+        }
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package Weeter;
+
+import org.apache.http.client.cache.CacheResponseStatus;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how the response cache handled each request.
+ */
+public class CacheStats {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder validated = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+
+    /**
+     * Records the status the caching client left in the request context.
+     */
+    void record(CacheResponseStatus status)
+    {
+        if (status == null) {
+            return;
+        }
+
+        switch (status) {
+            case CACHE_HIT:
+                hits.increment();
+                break;
+            case CACHE_MISS:
+                misses.increment();
+                break;
+            case VALIDATED:
+                validated.increment();
+                break;
+            case CACHE_MODULE_RESPONSE:
+                generated.increment();
+                break;
+        }
+    }
+
+    /**
+     * Responses served from the cache without contacting the server.
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Responses fetched from the server because nothing usable was cached.
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Responses served from the cache after the server confirmed, with a 304 to a conditional request, that the
+     * cached copy was still current.
+     */
+    public long getValidated()
+    {
+        return validated.sum();
+    }
+
+    /**
+     * Responses the cache generated itself, such as a 504 for an only-if-cached request it could not satisfy.
+     */
+    public long getGenerated()
+    {
+        return generated.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "hits " + getHits() + ", misses " + getMisses() + ", revalidated " + getValidated() + ", generated " + getGenerated();
+    }
+}
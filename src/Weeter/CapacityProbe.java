@@ -0,0 +1,298 @@
+package Weeter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds how many requests can be kept in flight against the API before it pushes back, instead of guessing.
+ *
+ * The probe holds a level of concurrency for one step, with that many workers each sending the next request as soon
+ * as the last one is back, and then decides how to move, the way TCP finds the capacity of a link (additive increase,
+ * multiplicative decrease). A clean step raises the concurrency by a fixed amount. A congested step cuts it by a
+ * factor: one where more than a small share of requests were throttled with a 429, where any request failed, or where
+ * the median latency rose past a multiple of the lowest median seen so far, which is how a server that queues
+ * rather than refuses shows it is full. After a few cuts the probe has bracketed the capacity and stops.
+ *
+ * The operating point it reports is the clean step with the highest throughput, and the latency curve shows
+ * throughput and latency at every level tried. The task should go through a client of its own with no rate limiter
+ * and no retries, such as one built from {@link #clientSettings(int)}, or the limiter rather than the server sets the
+ * pace and a 429 is never seen. A probe that ends on a congested step waits out one more step before returning, so
+ * whatever runs next does not start with the server's budget already spent.
+ *
+ * The probe can be read from the following system properties:
+ * moviedb.probe.initialConcurrency - the concurrency to start at (default 1)
+ * moviedb.probe.maxConcurrency - the most concurrency to try (default 256)
+ * moviedb.probe.increase - how much to add after a clean step (default 2)
+ * moviedb.probe.decrease - what to multiply by after a congested step (default 0.5)
+ * moviedb.probe.stepSeconds - how long each step lasts, which should cover the server's rate window (default 10)
+ * moviedb.probe.latencyInflation - how many times the lowest median latency counts as congested (default 2)
+ * moviedb.probe.maxThrottledShare - the share of requests that may be throttled in a clean step (default 0.01)
+ * moviedb.probe.backOffs - how many congested steps to stop after (default 3)
+ * moviedb.probe.maxSteps - the most steps to take (default 60)
+ */
+public class CapacityProbe {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private int initialConcurrency = 1;
+    private int maxConcurrency = 256;
+    private int increase = 2;
+    private double decrease = 0.5;
+    private long stepNanos = TimeUnit.SECONDS.toNanos(10);
+    private double latencyInflation = 2;
+    private double maxThrottledShare = 0.01;
+    private int backOffs = 3;
+    private int maxSteps = 60;
+
+    /**
+     * Reads the probe from the moviedb.probe.* system properties.
+     */
+    public static CapacityProbe fromSystemProperties()
+    {
+        return new CapacityProbe()
+                .setConcurrency(Integer.getInteger("moviedb.probe.initialConcurrency", 1), Integer.getInteger("moviedb.probe.maxConcurrency", 256))
+                .setIncrease(Integer.getInteger("moviedb.probe.increase", 2))
+                .setDecrease(Double.parseDouble(System.getProperty("moviedb.probe.decrease", "0.5")))
+                .setStepDuration(Long.getLong("moviedb.probe.stepSeconds", 10), TimeUnit.SECONDS)
+                .setLatencyInflation(Double.parseDouble(System.getProperty("moviedb.probe.latencyInflation", "2")))
+                .setMaxThrottledShare(Double.parseDouble(System.getProperty("moviedb.probe.maxThrottledShare", "0.01")))
+                .setBackOffs(Integer.getInteger("moviedb.probe.backOffs", 3))
+                .setMaxSteps(Integer.getInteger("moviedb.probe.maxSteps", 60));
+    }
+
+    /**
+     * Settings for a client the probe can drive: read from the system properties, but with no rate limiter, retries,
+     * cache, cassette, coalescing or hedging, and a connection pool big enough for the most concurrency the probe tries.
+     */
+    public static ClientSettings clientSettings(int maxConcurrency)
+    {
+        return ClientSettings.fromSystemProperties()
+                .setRateLimiter(null)
+                .setMaxRetries(0)
+                .setCacheEnabled(false)
+                .setCassetteMode(null)
+                .setCoalescingEnabled(false)
+                .setHedgingEnabled(false)
+                .setMaxTotal(maxConcurrency)
+                .setMaxPerRoute(maxConcurrency);
+    }
+
+    public CapacityProbe setConcurrency(int initialConcurrency, int maxConcurrency)
+    {
+        if (initialConcurrency <= 0 || maxConcurrency < initialConcurrency) {
+            throw new IllegalArgumentException("The concurrency must start above zero and at most at its maximum");
+        }
+        this.initialConcurrency = initialConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    public CapacityProbe setIncrease(int increase)
+    {
+        if (increase <= 0) {
+            throw new IllegalArgumentException("The increase must be positive");
+        }
+        this.increase = increase;
+        return this;
+    }
+
+    public CapacityProbe setDecrease(double decrease)
+    {
+        if (decrease <= 0 || decrease >= 1) {
+            throw new IllegalArgumentException("The decrease must be between 0 and 1");
+        }
+        this.decrease = decrease;
+        return this;
+    }
+
+    public CapacityProbe setStepDuration(long duration, TimeUnit unit)
+    {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("The step duration must be positive");
+        }
+        this.stepNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    public CapacityProbe setLatencyInflation(double latencyInflation)
+    {
+        if (latencyInflation <= 1) {
+            throw new IllegalArgumentException("The latency inflation must be above 1");
+        }
+        this.latencyInflation = latencyInflation;
+        return this;
+    }
+
+    public CapacityProbe setMaxThrottledShare(double maxThrottledShare)
+    {
+        this.maxThrottledShare = maxThrottledShare;
+        return this;
+    }
+
+    public CapacityProbe setBackOffs(int backOffs)
+    {
+        this.backOffs = backOffs;
+        return this;
+    }
+
+    public CapacityProbe setMaxSteps(int maxSteps)
+    {
+        this.maxSteps = maxSteps;
+        return this;
+    }
+
+    /**
+     * Runs the probe, blocking until it has converged or run out of steps. The task returns the status code of one
+     * request, and throws if the request failed or its response was not what was expected.
+     */
+    public CapacityResult probe(LoadTask task) throws InterruptedException
+    {
+        ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "capacity-probe-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        List<CapacityStep> steps = new ArrayList<>();
+        int congested = 0;
+        boolean coolDown = false;
+        long lowestMedian = Long.MAX_VALUE;
+        int concurrency = initialConcurrency;
+
+        try {
+            while (true) {
+
+                if (congested >= backOffs) {
+                    return new CapacityResult(steps, "backed off " + congested + " times");
+                }
+                if (steps.size() >= maxSteps) {
+                    return new CapacityResult(steps, "took the most steps allowed, " + maxSteps);
+                }
+
+                long started = System.nanoTime();
+                LoadStats stats = runStep(workers, task, concurrency);
+                long elapsed = System.nanoTime() - started;
+                long median = stats.getLatencies().getPercentileNanos(50);
+
+                String congestion = congestion(stats, median, lowestMedian);
+                steps.add(step(concurrency, elapsed, stats, congestion));
+
+                coolDown = congestion != null;
+                if (congestion != null) {
+                    congested++;
+                    concurrency = Math.max(1, (int) (concurrency * decrease));
+                    continue;
+                }
+
+                lowestMedian = Math.min(lowestMedian, median);
+                if (concurrency >= maxConcurrency) {
+                    return new CapacityResult(steps, "reached the most concurrency allowed, " + maxConcurrency + ", without congestion");
+                }
+                concurrency = Math.min(maxConcurrency, concurrency + increase);
+            }
+        }
+        finally {
+            workers.shutdownNow();
+            if (coolDown) {
+                TimeUnit.NANOSECONDS.sleep(stepNanos);
+            }
+        }
+    }
+
+    /**
+     * Keeps the given number of requests in flight for one step and collects how they went.
+     */
+    private LoadStats runStep(ExecutorService workers, final LoadTask task, int concurrency) throws InterruptedException
+    {
+        final LoadStats stats = new LoadStats();
+        final long deadline = System.nanoTime() + stepNanos;
+        final CountDownLatch done = new CountDownLatch(concurrency);
+
+        Runnable worker = RequestTag.propagate(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+
+                        long start = System.nanoTime();
+                        int statusCode = 0;
+                        Throwable error = null;
+
+                        try {
+                            statusCode = task.execute();
+                        }
+                        catch (Throwable ex) {
+                            error = ex;
+                        }
+
+                        stats.onComplete(start, start, System.nanoTime(), statusCode, error);
+                    }
+                }
+                finally {
+                    done.countDown();
+                }
+            }
+        });
+
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(worker);
+        }
+        done.await();
+
+        return stats;
+    }
+
+    /**
+     * Says why a step counts as congested, or returns null if it does not.
+     */
+    private String congestion(LoadStats stats, long median, long lowestMedian)
+    {
+        long total = stats.getLatencies().getCount();
+        if (total == 0) {
+            return "no request finished";
+        }
+
+        Long throttled = stats.getStatusCounts().get(TOO_MANY_REQUESTS);
+        if (throttled != null && throttled > maxThrottledShare * total) {
+            return String.format(Locale.ROOT, "%.1f%% throttled", throttled * 100.0 / total);
+        }
+
+        if (stats.getErrorCount() > 0) {
+            return stats.getErrorCount() + " errors " + stats.getErrorCounts();
+        }
+
+        if (lowestMedian != Long.MAX_VALUE && median > latencyInflation * lowestMedian) {
+            return String.format(Locale.ROOT, "median latency %.1fx the lowest", median / (double) lowestMedian);
+        }
+        return null;
+    }
+
+    private static CapacityStep step(int concurrency, long elapsedNanos, LoadStats stats, String congestion)
+    {
+        Long throttled = stats.getStatusCounts().get(TOO_MANY_REQUESTS);
+        long throttledCount = throttled == null ? 0 : throttled;
+        long succeeded = stats.getLatencies().getCount() - throttledCount - stats.getErrorCount();
+
+        return new CapacityStep(concurrency, elapsedNanos, Math.max(0, succeeded), throttledCount, stats.getErrorCount(), stats.getLatencies(), congestion);
+    }
+}
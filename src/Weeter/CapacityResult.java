@@ -0,0 +1,86 @@
+package Weeter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of a {@link CapacityProbe}: every step it took, the best operating point it found, and why it stopped.
+ */
+public class CapacityResult {
+
+    private final List<CapacityStep> steps;
+    private final String stopReason;
+
+    public CapacityResult(List<CapacityStep> steps, String stopReason)
+    {
+        this.steps = new ArrayList<>(steps);
+        this.stopReason = stopReason;
+    }
+
+    /**
+     * The steps in the order they were taken, tracing the probe's climbs and back-offs.
+     */
+    public List<CapacityStep> getSteps()
+    {
+        return new ArrayList<>(steps);
+    }
+
+    public String getStopReason()
+    {
+        return stopReason;
+    }
+
+    /**
+     * The uncongested step with the highest throughput, or null if every step was congested. Of steps with the
+     * same throughput, the one with the lowest concurrency wins.
+     */
+    public CapacityStep getOperatingPoint()
+    {
+        CapacityStep best = null;
+        for (CapacityStep step : steps) {
+            if (step.getCongestion() == null && (best == null
+                    || step.getThroughput() > best.getThroughput()
+                    || step.getThroughput() == best.getThroughput() && step.getConcurrency() < best.getConcurrency())) {
+                best = step;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Throughput and latency at each level of concurrency tried, lowest first, with the steps taken at the same
+     * level added together.
+     */
+    public List<CapacityStep> getLatencyCurve()
+    {
+        Map<Integer, CapacityStep> byConcurrency = new TreeMap<>();
+        for (CapacityStep step : steps) {
+            CapacityStep previous = byConcurrency.get(step.getConcurrency());
+            byConcurrency.put(step.getConcurrency(), previous == null ? step : previous.plus(step));
+        }
+        return new ArrayList<>(byConcurrency.values());
+    }
+
+    /**
+     * A multi-line report: the operating point, the latency curve and the steps.
+     */
+    public String summary()
+    {
+        CapacityStep operatingPoint = getOperatingPoint();
+
+        StringBuilder result = new StringBuilder("operating point: ")
+                .append(operatingPoint == null ? "none found" : operatingPoint.toString())
+                .append("\nstopped: ").append(stopReason)
+                .append("\nlatency curve:");
+        for (CapacityStep step : getLatencyCurve()) {
+            result.append("\n  ").append(step);
+        }
+        result.append("\nsteps:");
+        for (CapacityStep step : steps) {
+            result.append("\n  ").append(step);
+        }
+        return result.toString();
+    }
+}
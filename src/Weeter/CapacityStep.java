@@ -0,0 +1,113 @@
+package Weeter;
+
+/**
+ * What a {@link CapacityProbe} saw while holding one level of concurrency, or several steps at the same level
+ * added together.
+ */
+public class CapacityStep {
+
+    private final int concurrency;
+    private final long elapsedNanos;
+    private final long succeeded;
+    private final long throttled;
+    private final long errors;
+    private final LatencyHistogram latencies;
+    private final String congestion;
+
+    public CapacityStep(int concurrency, long elapsedNanos, long succeeded, long throttled, long errors, LatencyHistogram latencies, String congestion)
+    {
+        this.concurrency = concurrency;
+        this.elapsedNanos = elapsedNanos;
+        this.succeeded = succeeded;
+        this.throttled = throttled;
+        this.errors = errors;
+        this.latencies = latencies;
+        this.congestion = congestion;
+    }
+
+    /**
+     * Adds two steps at the same concurrency together. The result is congested if either was.
+     */
+    CapacityStep plus(CapacityStep other)
+    {
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.merge(latencies);
+        merged.merge(other.latencies);
+
+        return new CapacityStep(concurrency, elapsedNanos + other.elapsedNanos, succeeded + other.succeeded,
+                throttled + other.throttled, errors + other.errors, merged, congestion != null ? congestion : other.congestion);
+    }
+
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * Requests that were neither throttled nor failed.
+     */
+    public long getSucceeded()
+    {
+        return succeeded;
+    }
+
+    /**
+     * Requests the server answered with 429 Too Many Requests.
+     */
+    public long getThrottled()
+    {
+        return throttled;
+    }
+
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Successful requests per second.
+     */
+    public double getThroughput()
+    {
+        return elapsedNanos == 0 ? 0 : succeeded * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * The share of all requests that were throttled, from 0 to 1.
+     */
+    public double getThrottledShare()
+    {
+        long total = succeeded + throttled + errors;
+        return total == 0 ? 0 : throttled / (double) total;
+    }
+
+    /**
+     * The latencies of every request in the step, throttled and failed ones included.
+     */
+    public LatencyHistogram getLatencies()
+    {
+        return latencies;
+    }
+
+    /**
+     * Why the probe backed off after this step, or null if it did not.
+     */
+    public String getCongestion()
+    {
+        return congestion;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("concurrency %3d: %7.1f req/s, p50 %s, p95 %s, %d throttled, %d errors%s", concurrency,
+                getThroughput(), LatencyHistogram.format(latencies.getPercentileNanos(50)),
+                LatencyHistogram.format(latencies.getPercentileNanos(95)), throttled, errors,
+                congestion == null ? "" : " - " + congestion);
+    }
+}
@@ -0,0 +1,309 @@
+package Weeter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An append-only log of recorded responses in a memory-mapped file, for replaying real API responses without the
+ * network.
+ *
+ * The file starts with a 16 byte header (a magic number and the offset of the end of the last complete record),
+ * followed by one record per response: its length, the request key, the status line, the headers and the body.
+ * Opening a cassette scans the records once to build an in-memory index from key to offset; a key recorded more than
+ * once resolves to its latest record. The end offset is only moved past a record once it is fully written, so a
+ * recording that was cut short is still readable up to its last complete response.
+ *
+ * Replayed bodies are read-only slices of the mapping, so serving a response copies nothing and costs no more than
+ * touching the pages it sits on. A single mapping is limited to 2 GB. While recording, the file is mapped at least a
+ * megabyte ahead of what has been written, and cut back to the end of its last record when it is closed.
+ *
+ * Two writers on one file would each keep their own end offset and overwrite each other's records, so a file is only
+ * ever open once. Within the JVM, {@link #open} hands every client the same cassette for the same file and closes it
+ * when the last of them does; across processes, the file is locked while it is open, exclusively for recording and
+ * shared for replay, and a cassette another process holds fails to open rather than waiting.
+ */
+public class Cassette implements Closeable {
+
+    public enum Mode {
+        RECORD,
+        REPLAY
+    }
+
+    private static final long MAGIC = 0x4d44424341533031L;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OFFSET = 8;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    // Every cassette open in this JVM, by canonical path, guarded by itself
+    private static final Map<String, Cassette> OPEN = new HashMap<>();
+
+    private final Mode mode;
+    private final String path;
+    private final FileChannel channel;
+    private final ConcurrentHashMap<String, Integer> index = new ConcurrentHashMap<>();
+
+    private volatile MappedByteBuffer mapping;
+    private int end;
+    private int references;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+
+    /**
+     * Opens the cassette in the given file, or returns the one already open on it. Recording creates the file if
+     * needed and adds to what is already there; replaying requires it to exist. Fails if the file is already open
+     * here in the other mode, or is locked by another process. Every open is matched by a {@link #close()}.
+     */
+    public static Cassette open(File file, Mode mode) throws IOException
+    {
+        String path = file.getCanonicalPath();
+
+        synchronized (OPEN) {
+            Cassette cassette = OPEN.get(path);
+            if (cassette == null) {
+                cassette = new Cassette(file, mode, path);
+                OPEN.put(path, cassette);
+            }
+            else if (cassette.mode != mode) {
+                throw new IOException("Cassette " + file + " is already open for " + cassette.mode.name().toLowerCase(Locale.ROOT));
+            }
+
+            cassette.references++;
+            return cassette;
+        }
+    }
+
+    private Cassette(File file, Mode mode, String path) throws IOException
+    {
+        this.mode = mode;
+        this.path = path;
+
+        if (mode == Mode.RECORD) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        else {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        try {
+            FileLock lock = channel.tryLock(0, Long.MAX_VALUE, mode == Mode.REPLAY);
+            if (lock == null) {
+                throw new IOException("Cassette " + file + " is in use by another process");
+            }
+
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Cassette " + file + " is larger than 2 GB");
+            }
+
+            if (size == 0 && mode == Mode.RECORD) {
+                mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_CAPACITY);
+                mapping.putLong(0, MAGIC);
+                mapping.putLong(END_OFFSET, HEADER_SIZE);
+            }
+            else if (mode == Mode.RECORD) {
+                mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+            }
+            else {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            if (mapping.capacity() < HEADER_SIZE || mapping.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a cassette");
+            }
+
+            end = (int) mapping.getLong(END_OFFSET);
+            buildIndex();
+        }
+        catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Returns the latest response recorded for the key, or null if there is none.
+     */
+    public RecordedResponse get(String key)
+    {
+        Integer offset = index.get(key);
+        if (offset == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.position(offset + 4);
+
+        readString(buffer);
+        int statusCode = buffer.getInt();
+        String reasonPhrase = readString(buffer);
+
+        String[] headers = new String[buffer.getInt() * 2];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = readString(buffer);
+        }
+
+        int bodyLength = buffer.getInt();
+        buffer.limit(buffer.position() + bodyLength);
+
+        return new RecordedResponse(statusCode, reasonPhrase, headers, buffer.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Appends a response to the end of the cassette. The headers are alternating names and values.
+     */
+    public synchronized void record(String key, int statusCode, String reasonPhrase, String[] headers, byte[] body) throws IOException
+    {
+        if (mode != Mode.RECORD) {
+            throw new IllegalStateException("The cassette was opened for replay");
+        }
+
+        byte[][] strings = new byte[headers.length + 2][];
+        strings[0] = key.getBytes(StandardCharsets.UTF_8);
+        strings[1] = (reasonPhrase == null ? "" : reasonPhrase).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < headers.length; i++) {
+            strings[i + 2] = headers[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        // Status, header count and body length, plus a length before every string
+        long length = 12 + body.length;
+        for (byte[] string : strings) {
+            length += 4 + string.length;
+        }
+
+        ensureCapacity(end + 4 + length);
+
+        ByteBuffer buffer = mapping.duplicate();
+        buffer.position(end);
+        buffer.putInt((int) length);
+        writeString(buffer, strings[0]);
+        buffer.putInt(statusCode);
+        writeString(buffer, strings[1]);
+        buffer.putInt(headers.length / 2);
+        for (int i = 2; i < strings.length; i++) {
+            writeString(buffer, strings[i]);
+        }
+        buffer.putInt(body.length);
+        buffer.put(body);
+
+        // Only now is the record complete, so only now does it become part of the cassette
+        index.put(key, end);
+        end = buffer.position();
+        mapping.putLong(END_OFFSET, end);
+
+        recorded.increment();
+    }
+
+    /**
+     * The number of distinct keys with a recorded response.
+     */
+    public int size()
+    {
+        return index.size();
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    public long getRecordedCount()
+    {
+        return recorded.sum();
+    }
+
+    /**
+     * Closes this use of the cassette. The file is flushed, unlocked and closed once every open has been closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (OPEN) {
+            if (references == 0 || --references > 0) {
+                return;
+            }
+            OPEN.remove(path);
+        }
+
+        synchronized (this) {
+            if (mode == Mode.RECORD) {
+                mapping.force();
+                channel.truncate(end);
+            }
+            channel.close();
+        }
+    }
+
+    private void buildIndex() throws IOException
+    {
+        ByteBuffer buffer = mapping.duplicate();
+        int position = HEADER_SIZE;
+
+        while (position < end) {
+
+            buffer.position(position);
+            int length = buffer.getInt();
+            if (length <= 0 || (long) position + 4 + length > end) {
+                throw new IOException("Cassette record at " + position + " is corrupt");
+            }
+
+            index.put(readString(buffer), position);
+            position += 4 + length;
+        }
+    }
+
+    private void ensureCapacity(long required) throws IOException
+    {
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("The cassette cannot grow past 2 GB");
+        }
+
+        MappedByteBuffer current = mapping;
+        if (required <= current.capacity()) {
+            return;
+        }
+
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * current.capacity()));
+        current.force();
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] bytes)
+    {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
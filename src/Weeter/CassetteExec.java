@@ -0,0 +1,166 @@
+package Weeter;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.execchain.ClientExecChain;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records every response that comes back from the server into a {@link Cassette}, or answers every request from
+ * one without going to the network, depending on the cassette's mode.
+ *
+ * Requests are keyed by method, path and query, leaving out the host, so a recording made against the real API can
+ * be replayed through the stand-in server's URL or any other. The api_key parameter is left out as well, so the token
+ * is never written into a cassette and a recording replays whichever token the requests carry. A request with
+ * nothing recorded for it fails rather than quietly going out over the network.
+ */
+class CassetteExec implements ClientExecChain {
+
+    private static final String API_KEY = "api_key";
+
+    private final ClientExecChain requestExecutor;
+    private final Cassette cassette;
+
+    CassetteExec(ClientExecChain requestExecutor, Cassette cassette)
+    {
+        this.requestExecutor = requestExecutor;
+        this.cassette = cassette;
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRoute route, HttpRequestWrapper request, HttpClientContext context,
+                                         HttpExecutionAware execAware) throws IOException, HttpException
+    {
+        String key = keyFor(request);
+
+        if (cassette.getMode() == Cassette.Mode.REPLAY) {
+
+            RecordedResponse recorded = cassette.get(key);
+            if (recorded == null) {
+                throw new ClientProtocolException("No recorded response for " + key);
+            }
+            return replay(recorded);
+        }
+
+        CloseableHttpResponse response = requestExecutor.execute(route, request, context, execAware);
+        try {
+
+            HttpEntity entity = response.getEntity();
+            byte[] body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+
+            List<String> headers = new ArrayList<>();
+            for (Header header : response.getAllHeaders()) {
+                if (!isHopByHop(header.getName())) {
+                    headers.add(header.getName());
+                    headers.add(header.getValue());
+                }
+            }
+
+            cassette.record(key, response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(),
+                    headers.toArray(new String[headers.size()]), body);
+
+            if (entity != null) {
+                ByteArrayEntity copy = new ByteArrayEntity(body);
+                copy.setContentType(entity.getContentType());
+                copy.setContentEncoding(entity.getContentEncoding());
+                response.setEntity(copy);
+            }
+            return response;
+        }
+        catch (IOException | RuntimeException ex) {
+            response.close();
+            throw ex;
+        }
+    }
+
+    static String keyFor(HttpRequestWrapper request)
+    {
+        URI uri = request.getURI();
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        String query = withoutApiKey(uri.getRawQuery());
+
+        return request.getMethod() + " " + (query.isEmpty() ? path : path + "?" + query);
+    }
+
+    /**
+     * The raw query with every api_key parameter taken out, or an empty string if nothing else is left.
+     */
+    private static String withoutApiKey(String rawQuery)
+    {
+        StringBuilder result = new StringBuilder();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                if (parameter.isEmpty() || parameter.equals(API_KEY) || parameter.startsWith(API_KEY + "=")) {
+                    continue;
+                }
+                if (result.length() > 0) {
+                    result.append('&');
+                }
+                result.append(parameter);
+            }
+        }
+        return result.toString();
+    }
+
+    private static CloseableHttpResponse replay(RecordedResponse recorded)
+    {
+        ReplayedResponse response = new ReplayedResponse(recorded.getStatusCode(), recorded.getReasonPhrase());
+        ByteBufferEntity entity = new ByteBufferEntity(recorded.getBody());
+
+        String[] headers = recorded.getHeaders();
+        for (int i = 0; i < headers.length; i += 2) {
+
+            response.addHeader(headers[i], headers[i + 1]);
+
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(headers[i])) {
+                entity.setContentType(headers[i + 1]);
+            }
+            else if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(headers[i])) {
+                entity.setContentEncoding(headers[i + 1]);
+            }
+        }
+
+        response.setEntity(entity);
+        return response;
+    }
+
+    private static boolean isHopByHop(String name)
+    {
+        return HttpHeaders.CONNECTION.equalsIgnoreCase(name)
+                || "Keep-Alive".equalsIgnoreCase(name)
+                || HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)
+                || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+    }
+
+    /**
+     * A response that never held a connection, so there is nothing to release when it is closed.
+     */
+    private static class ReplayedResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        ReplayedResponse(int statusCode, String reasonPhrase)
+        {
+            super(HttpVersion.HTTP_1_1, statusCode, reasonPhrase);
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
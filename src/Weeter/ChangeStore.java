@@ -0,0 +1,445 @@
+package Weeter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact in-memory table of person change items, one row per item, kept column by column.
+ *
+ * Held as parsed JSON, every item is a map of boxed numbers and strings, and every key such as "biography" is a
+ * string of its own. Here each column is a single buffer of primitives: the person ID, the change's key, the
+ * item's action and language, its time, and its ID. Keys, actions and languages are dictionary encoded, each
+ * distinct string stored once and every row holding only its small code, and the 24 hex digit item ID is packed
+ * into 12 bytes. A row takes 29 bytes ({@link #ROW_BYTES}), however many there are, where the same item parsed into
+ * maps takes several hundred. The values before and after the change are not kept; the item ID says where to fetch
+ * them from.
+ *
+ * The columns can be kept on the heap or, with {@link #offHeap(int)}, in direct buffers outside it, where millions
+ * of rows add nothing for the garbage collector to trace. They double in size as rows are added.
+ *
+ * Scans run down the columns without creating any objects, skipping rows on the cheapest test first. A scan for a
+ * key that was never added returns at once. Rows are added under a lock and can be scanned by any number of threads
+ * while they are; a scan sees every row added before it started.
+ */
+public class ChangeStore {
+
+    /**
+     * Matches rows of every person in a scan.
+     */
+    public static final int ANY_PERSON = -1;
+
+    private static final int PERSON_BYTES = 4;
+    private static final int KEY_BYTES = 2;
+    private static final int ACTION_BYTES = 1;
+    private static final int LANGUAGE_BYTES = 2;
+    private static final int TIME_BYTES = 8;
+    private static final int ITEM_ID_BYTES = 12;
+
+    /**
+     * How many bytes of column space each row takes.
+     */
+    public static final int ROW_BYTES = PERSON_BYTES + KEY_BYTES + ACTION_BYTES + LANGUAGE_BYTES + TIME_BYTES + ITEM_ID_BYTES;
+
+    private final boolean direct;
+    private final Dictionary keys = new Dictionary(0xFFFF);
+    private final Dictionary actions = new Dictionary(0xFF);
+    private final Dictionary languages = new Dictionary(0xFFFF);
+
+    private volatile Columns columns;
+    private volatile int size;
+
+    /**
+     * Reads the rows a scan matches. Each row is read through the store's getters.
+     */
+    public interface Visitor {
+
+        void visit(ChangeStore store, int row);
+    }
+
+    /**
+     * Creates a store on the heap with room for the given number of rows to start with.
+     */
+    public ChangeStore(int initialRows)
+    {
+        this(initialRows, false);
+    }
+
+    /**
+     * Creates a store whose columns are kept in direct buffers, outside the heap.
+     */
+    public static ChangeStore offHeap(int initialRows)
+    {
+        return new ChangeStore(initialRows, true);
+    }
+
+    private ChangeStore(int initialRows, boolean direct)
+    {
+        this.direct = direct;
+        this.columns = new Columns(Math.max(16, initialRows), direct);
+    }
+
+    /**
+     * Adds a row for every item of the person's changes, returning how many there were. Either every item is added
+     * or, if one of them cannot be, none are.
+     */
+    public synchronized int add(int personId, PersonChanges changes)
+    {
+        int count = 0;
+        Set<String> newKeys = new HashSet<>();
+        Set<String> newActions = new HashSet<>();
+        Set<String> newLanguages = new HashSet<>();
+        for (PersonChange change : changes.getChanges()) {
+            for (PersonChangeItem item : change.getItems()) {
+                parseId(item.getId());
+                newKeys.add(change.getKey());
+                newActions.add(item.getAction());
+                newLanguages.add(item.getLanguage());
+                count++;
+            }
+        }
+
+        // Check every dictionary has a code for each new value before any row is written
+        keys.checkRoom(newKeys);
+        actions.checkRoom(newActions);
+        languages.checkRoom(newLanguages);
+
+        Columns target = columns;
+        while (target.capacity - size < count) {
+            target = target.grow(direct);
+        }
+        columns = target;
+
+        for (PersonChange change : changes.getChanges()) {
+            for (PersonChangeItem item : change.getItems()) {
+                add(personId, change.getKey(), item);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds one item of a change to the given key of a person.
+     */
+    public synchronized void add(int personId, String key, PersonChangeItem item)
+    {
+        long[] id = parseId(item.getId());
+
+        int row = size;
+        Columns target = columns;
+        if (row == target.capacity) {
+            target = target.grow(direct);
+            columns = target;
+        }
+
+        target.person.put(row, personId);
+        target.key.put(row, (short) keys.encode(key));
+        target.action.put(row, (byte) actions.encode(item.getAction()));
+        target.language.put(row, (short) languages.encode(item.getLanguage()));
+        target.time.put(row, item.getTime());
+        target.idHigh.put(row, id[0]);
+        target.idLow.put(row, (int) id[1]);
+
+        // Publishing the new size makes the row visible to scans
+        size = row + 1;
+    }
+
+    /**
+     * Visits every row that matches: the person, or {@link #ANY_PERSON}; the key, or null for any; and a time from
+     * fromTime, included, to toTime, excluded, in milliseconds since the epoch. Returns how many rows matched.
+     */
+    public int scan(int personId, String key, long fromTime, long toTime, Visitor visitor)
+    {
+        int rows = size;
+        Columns source = columns;
+
+        int keyCode = -1;
+        if (key != null) {
+            keyCode = keys.find(key);
+            if (keyCode < 0) {
+                return 0;
+            }
+        }
+
+        int matched = 0;
+        for (int row = 0; row < rows; row++) {
+
+            if (personId != ANY_PERSON && source.person.get(row) != personId) {
+                continue;
+            }
+            if (keyCode >= 0 && (source.key.get(row) & 0xFFFF) != keyCode) {
+                continue;
+            }
+            long time = source.time.get(row);
+            if (time < fromTime || time >= toTime) {
+                continue;
+            }
+
+            matched++;
+            if (visitor != null) {
+                visitor.visit(this, row);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Counts the rows a scan with the same arguments would visit.
+     */
+    public int count(int personId, String key, long fromTime, long toTime)
+    {
+        return scan(personId, key, fromTime, toTime, null);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getPersonId(int row)
+    {
+        return columns.person.get(check(row));
+    }
+
+    public String getKey(int row)
+    {
+        return keys.decode(columns.key.get(check(row)) & 0xFFFF);
+    }
+
+    public String getAction(int row)
+    {
+        return actions.decode(columns.action.get(check(row)) & 0xFF);
+    }
+
+    public String getLanguage(int row)
+    {
+        return languages.decode(columns.language.get(check(row)) & 0xFFFF);
+    }
+
+    public long getTime(int row)
+    {
+        return columns.time.get(check(row));
+    }
+
+    /**
+     * The item's ID, as the 24 lower-case hex digits it was added with.
+     */
+    public String getItemId(int row)
+    {
+        Columns source = columns;
+        return String.format("%016x%08x", source.idHigh.get(check(row)), source.idLow.get(row));
+    }
+
+    /**
+     * The distinct keys that have been added, in the order they were first seen.
+     */
+    public List<String> getKeys()
+    {
+        return keys.values();
+    }
+
+    /**
+     * The bytes taken by the columns, allocated rows included, and the dictionaries' strings.
+     */
+    public long getMemoryBytes()
+    {
+        return (long) columns.capacity * ROW_BYTES + keys.bytes() + actions.bytes() + languages.bytes();
+    }
+
+    public boolean isOffHeap()
+    {
+        return direct;
+    }
+
+    /**
+     * Splits a 24 hex digit item ID into its first 16 digits and its last 8.
+     */
+    private static long[] parseId(String id)
+    {
+        if (id == null || id.length() != 24) {
+            throw new IllegalArgumentException("The change item ID \"" + id + "\" is not 24 hex digits");
+        }
+
+        try {
+            return new long[] { Long.parseUnsignedLong(id.substring(0, 16), 16), Long.parseLong(id.substring(16), 16) };
+        }
+        catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("The change item ID \"" + id + "\" is not 24 hex digits", ex);
+        }
+    }
+
+    private int check(int row)
+    {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is not in a store of " + size + " rows");
+        }
+        return row;
+    }
+
+    /**
+     * One buffer per column, all with room for the same number of rows.
+     */
+    private static class Columns {
+
+        private final int capacity;
+        private final ByteBuffer[] buffers;
+        private final IntBuffer person;
+        private final ShortBuffer key;
+        private final ByteBuffer action;
+        private final ShortBuffer language;
+        private final LongBuffer time;
+        private final LongBuffer idHigh;
+        private final IntBuffer idLow;
+
+        Columns(int capacity, boolean direct)
+        {
+            this.capacity = capacity;
+            this.buffers = new ByteBuffer[] {
+                    allocate(capacity * PERSON_BYTES, direct),
+                    allocate(capacity * KEY_BYTES, direct),
+                    allocate(capacity * ACTION_BYTES, direct),
+                    allocate(capacity * LANGUAGE_BYTES, direct),
+                    allocate(capacity * TIME_BYTES, direct),
+                    allocate(capacity * 8, direct),
+                    allocate(capacity * 4, direct)
+            };
+            this.person = buffers[0].asIntBuffer();
+            this.key = buffers[1].asShortBuffer();
+            this.action = buffers[2];
+            this.language = buffers[3].asShortBuffer();
+            this.time = buffers[4].asLongBuffer();
+            this.idHigh = buffers[5].asLongBuffer();
+            this.idLow = buffers[6].asIntBuffer();
+        }
+
+        /**
+         * Copies every column into buffers twice the size.
+         */
+        Columns grow(boolean direct)
+        {
+            if (capacity > Integer.MAX_VALUE / 2 / TIME_BYTES) {
+                throw new IllegalStateException("The change store is full at " + capacity + " rows");
+            }
+
+            Columns result = new Columns(capacity * 2, direct);
+            for (int i = 0; i < buffers.length; i++) {
+                ByteBuffer from = buffers[i].duplicate();
+                from.clear();
+                ByteBuffer to = result.buffers[i].duplicate();
+                to.put(from);
+            }
+            return result;
+        }
+
+        private static ByteBuffer allocate(int bytes, boolean direct)
+        {
+            ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+            return buffer.order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Gives each distinct string a small code, with 0 for null.
+     */
+    private static class Dictionary {
+
+        private final int maxCode;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private volatile String[] values = new String[] {null};
+
+        Dictionary(int maxCode)
+        {
+            this.maxCode = maxCode;
+        }
+
+        /**
+         * Returns the value's code, giving it the next one if it is new. Only called under the store's lock.
+         */
+        int encode(String value)
+        {
+            if (value == null) {
+                return 0;
+            }
+
+            Integer code = codes.get(value);
+            if (code == null) {
+                String[] current = values;
+                if (current.length > maxCode) {
+                    throw new IllegalStateException("More than " + maxCode + " distinct values to encode");
+                }
+
+                String[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = value;
+                code = current.length;
+                codes.put(value, code);
+                values = grown;
+            }
+            return code;
+        }
+
+        /**
+         * Throws if the values that have no code yet would need more codes than are left. Only called under the
+         * store's lock.
+         */
+        void checkRoom(Set<String> added)
+        {
+            int fresh = 0;
+            for (String value : added) {
+                if (value != null && !codes.containsKey(value)) {
+                    fresh++;
+                }
+            }
+
+            if (values.length - 1 + fresh > maxCode) {
+                throw new IllegalStateException("More than " + maxCode + " distinct values to encode");
+            }
+        }
+
+        /**
+         * Returns the value's code, or -1 if it has none.
+         */
+        int find(String value)
+        {
+            String[] current = values;
+            for (int code = 1; code < current.length; code++) {
+                if (current[code].equals(value)) {
+                    return code;
+                }
+            }
+            return -1;
+        }
+
+        String decode(int code)
+        {
+            return values[code];
+        }
+
+        List<String> values()
+        {
+            String[] current = values;
+            List<String> result = new ArrayList<>();
+            for (int code = 1; code < current.length; code++) {
+                result.add(current[code]);
+            }
+            return result;
+        }
+
+        long bytes()
+        {
+            long total = 0;
+            for (String value : values) {
+                total += value == null ? 0 : 40 + 2L * value.length();
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package Weeter;
+
+import org.apache.http.client.ResponseHandler;
+
+import java.util.List;
+
+/**
+ * One page of the list of people whose details changed, as returned by /person/changes.
+ */
+public class ChangedPeople {
+
+    /**
+     * Binds a successful response to a ChangedPeople straight off the response stream.
+     */
+    public static final ResponseHandler<JsonResponse<ChangedPeople>> HANDLER = JsonResponse.handler(ChangedPeople.class);
+
+    private final List<Integer> ids;
+    private final int page;
+    private final int totalPages;
+    private final int totalResults;
+
+    public ChangedPeople(List<Integer> ids, int page, int totalPages, int totalResults)
+    {
+        this.ids = ids;
+        this.page = page;
+        this.totalPages = totalPages;
+        this.totalResults = totalResults;
+    }
+
+    /**
+     * The IDs of the people on this page.
+     */
+    public List<Integer> getIds()
+    {
+        return ids;
+    }
+
+    public int getPage()
+    {
+        return page;
+    }
+
+    public int getTotalPages()
+    {
+        return totalPages;
+    }
+
+    public int getTotalResults()
+    {
+        return totalResults;
+    }
+}
@@ -0,0 +1,384 @@
+package Weeter;
+
+import java.io.File;
+
+/**
+ * How a {@link MovieDbClient} is set up. Start from {@link #fromSystemProperties()} or the defaults and change what
+ * is needed; every setter returns the settings so calls can be chained.
+ *
+ * The following system properties are read:
+ * moviedb.pool.maxTotal - the maximum number of open connections (default 64)
+ * moviedb.pool.maxPerRoute - the maximum number of open connections to one host (default 32)
+ * moviedb.pool.idleSeconds - how long a connection may sit idle before it is closed (default 30)
+ * moviedb.pool.keepAliveSeconds - how long to keep a connection when the server does not say (default 30)
+ * moviedb.timeout.connectMillis - how long to wait for a connection to be made, 0 for no limit (default 5000)
+ * moviedb.timeout.socketMillis - how long to wait for the first byte of a response, or between any two bytes of it,
+ *                                0 for no limit (default 15000)
+ * moviedb.timeout.totalMillis - how long a whole request may take, from leasing a connection to the handler returning,
+ *                               before it is aborted, 0 for no limit (default 60000)
+ * moviedb.rate.maxRetries - how many times to retry a request the server throttled (default 5)
+ * moviedb.compression - set to false to stop asking the server for gzip or deflate compressed responses (default true)
+ * moviedb.async.threads - how many threads an {@link AsyncMovieDbClient} runs its requests on (default 4)
+ * moviedb.coalesce - set to true to let identical GETs in flight at the same time share one request (default false)
+ * moviedb.hedge - set to true to send a second copy of a GET that runs longer than usual (default false)
+ * moviedb.hedge.percentile - the percentile of an endpoint's latencies a GET has to pass to be hedged (default 95)
+ * moviedb.hedge.minSamples - how many latencies an endpoint needs before its GETs are hedged (default 20)
+ * moviedb.hedge.maxShare - the most hedges to send, as a share of all requests (default 0.1)
+ * moviedb.cache - set to true to cache responses as HTTP caching rules allow (default false)
+ * moviedb.cache.maxEntries - how many responses to keep in memory (default 1000)
+ * moviedb.cache.maxObjectBytes - the largest response body to cache (default 1048576)
+ * moviedb.cache.dir - a directory to also keep cached responses in, so they survive between runs (default none)
+ * moviedb.cache.maxDiskBytes - how many bytes of responses to keep in that directory before the least recently used
+ *                              are deleted, 0 for no limit (default 67108864)
+ * moviedb.cassette - "record" to save every response from the server, or "replay" to answer from a recording
+ * moviedb.cassette.file - the file recordings are kept in (default moviedb.cassette)
+ */
+public class ClientSettings {
+
+    private int maxTotal = 64;
+    private int maxPerRoute = 32;
+    private long idleSeconds = 30;
+    private long keepAliveSeconds = 30;
+
+    private int connectTimeoutMillis = 5000;
+    private int socketTimeoutMillis = 15000;
+    private long totalTimeoutMillis = 60000;
+
+    private RateLimiter rateLimiter;
+    private int maxRetries = 5;
+    private boolean compressionEnabled = true;
+    private int asyncThreads = 4;
+    private boolean coalescingEnabled;
+
+    private boolean hedgingEnabled;
+    private double hedgePercentile = 95;
+    private int hedgeMinSamples = 20;
+    private double hedgeMaxShare = 0.1;
+
+    private boolean cacheEnabled;
+    private int cacheMaxEntries = 1000;
+    private long cacheMaxObjectBytes = 1024 * 1024;
+    private File cacheDirectory;
+    private long cacheMaxDiskBytes = 64 * 1024 * 1024;
+
+    private Cassette.Mode cassetteMode;
+    private File cassetteFile = new File("moviedb.cassette");
+
+    /**
+     * Reads the settings from the system properties, paced by the shared {@link RateLimiter}.
+     */
+    public static ClientSettings fromSystemProperties()
+    {
+        String cacheDirectory = System.getProperty("moviedb.cache.dir");
+        String cassetteMode = System.getProperty("moviedb.cassette", "");
+
+        return new ClientSettings()
+                .setMaxTotal(Integer.getInteger("moviedb.pool.maxTotal", 64))
+                .setMaxPerRoute(Integer.getInteger("moviedb.pool.maxPerRoute", 32))
+                .setIdleSeconds(Long.getLong("moviedb.pool.idleSeconds", 30))
+                .setKeepAliveSeconds(Long.getLong("moviedb.pool.keepAliveSeconds", 30))
+                .setConnectTimeoutMillis(Integer.getInteger("moviedb.timeout.connectMillis", 5000))
+                .setSocketTimeoutMillis(Integer.getInteger("moviedb.timeout.socketMillis", 15000))
+                .setTotalTimeoutMillis(Long.getLong("moviedb.timeout.totalMillis", 60000))
+                .setRateLimiter(RateLimiter.shared())
+                .setMaxRetries(Integer.getInteger("moviedb.rate.maxRetries", 5))
+                .setCompressionEnabled(Boolean.parseBoolean(System.getProperty("moviedb.compression", "true")))
+                .setAsyncThreads(Integer.getInteger("moviedb.async.threads", 4))
+                .setCoalescingEnabled(Boolean.getBoolean("moviedb.coalesce"))
+                .setHedgingEnabled(Boolean.getBoolean("moviedb.hedge"))
+                .setHedgePercentile(Double.parseDouble(System.getProperty("moviedb.hedge.percentile", "95")))
+                .setHedgeMinSamples(Integer.getInteger("moviedb.hedge.minSamples", 20))
+                .setHedgeMaxShare(Double.parseDouble(System.getProperty("moviedb.hedge.maxShare", "0.1")))
+                .setCacheEnabled(Boolean.getBoolean("moviedb.cache"))
+                .setCacheMaxEntries(Integer.getInteger("moviedb.cache.maxEntries", 1000))
+                .setCacheMaxObjectBytes(Long.getLong("moviedb.cache.maxObjectBytes", 1024 * 1024))
+                .setCacheDirectory(cacheDirectory == null ? null : new File(cacheDirectory))
+                .setCacheMaxDiskBytes(Long.getLong("moviedb.cache.maxDiskBytes", 64 * 1024 * 1024))
+                .setCassetteMode(cassetteMode.isEmpty() ? null : Cassette.Mode.valueOf(cassetteMode.toUpperCase()))
+                .setCassetteFile(new File(System.getProperty("moviedb.cassette.file", "moviedb.cassette")));
+    }
+
+    public int getMaxTotal()
+    {
+        return maxTotal;
+    }
+
+    public ClientSettings setMaxTotal(int maxTotal)
+    {
+        this.maxTotal = maxTotal;
+        return this;
+    }
+
+    public int getMaxPerRoute()
+    {
+        return maxPerRoute;
+    }
+
+    public ClientSettings setMaxPerRoute(int maxPerRoute)
+    {
+        this.maxPerRoute = maxPerRoute;
+        return this;
+    }
+
+    public long getIdleSeconds()
+    {
+        return idleSeconds;
+    }
+
+    public ClientSettings setIdleSeconds(long idleSeconds)
+    {
+        this.idleSeconds = idleSeconds;
+        return this;
+    }
+
+    public long getKeepAliveSeconds()
+    {
+        return keepAliveSeconds;
+    }
+
+    public ClientSettings setKeepAliveSeconds(long keepAliveSeconds)
+    {
+        this.keepAliveSeconds = keepAliveSeconds;
+        return this;
+    }
+
+    public int getConnectTimeoutMillis()
+    {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * How long to wait for a connection to the server to be made. 0 waits as long as it takes.
+     */
+    public ClientSettings setConnectTimeoutMillis(int connectTimeoutMillis)
+    {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    public int getSocketTimeoutMillis()
+    {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * How long to wait for the first byte of a response, and then between any two bytes of it. 0 waits as long as it
+     * takes.
+     */
+    public ClientSettings setSocketTimeoutMillis(int socketTimeoutMillis)
+    {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        return this;
+    }
+
+    public long getTotalTimeoutMillis()
+    {
+        return totalTimeoutMillis;
+    }
+
+    /**
+     * How long a whole request may take, waits for the rate limiter and retries included, before it is aborted.
+     * 0 lets it take as long as it takes.
+     */
+    public ClientSettings setTotalTimeoutMillis(long totalTimeoutMillis)
+    {
+        this.totalTimeoutMillis = totalTimeoutMillis;
+        return this;
+    }
+
+    public RateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }
+
+    /**
+     * Paces requests that reach the network with the given limiter. Null sends them as fast as they come.
+     */
+    public ClientSettings setRateLimiter(RateLimiter rateLimiter)
+    {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    public int getMaxRetries()
+    {
+        return maxRetries;
+    }
+
+    public ClientSettings setMaxRetries(int maxRetries)
+    {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public boolean isCompressionEnabled()
+    {
+        return compressionEnabled;
+    }
+
+    /**
+     * Asks the server for gzip or deflate compressed responses, which are decompressed as they are read.
+     */
+    public ClientSettings setCompressionEnabled(boolean compressionEnabled)
+    {
+        this.compressionEnabled = compressionEnabled;
+        return this;
+    }
+
+    public int getAsyncThreads()
+    {
+        return asyncThreads;
+    }
+
+    public ClientSettings setAsyncThreads(int asyncThreads)
+    {
+        this.asyncThreads = asyncThreads;
+        return this;
+    }
+
+    public boolean isCoalescingEnabled()
+    {
+        return coalescingEnabled;
+    }
+
+    /**
+     * Lets identical GETs that are in flight at the same time share one request and its result, see {@link SingleFlight}.
+     */
+    public ClientSettings setCoalescingEnabled(boolean coalescingEnabled)
+    {
+        this.coalescingEnabled = coalescingEnabled;
+        return this;
+    }
+
+    public boolean isHedgingEnabled()
+    {
+        return hedgingEnabled;
+    }
+
+    /**
+     * Sends a second copy of a GET that runs longer than usual and takes whichever answers first, see
+     * {@link HedgedRequests}.
+     */
+    public ClientSettings setHedgingEnabled(boolean hedgingEnabled)
+    {
+        this.hedgingEnabled = hedgingEnabled;
+        return this;
+    }
+
+    public double getHedgePercentile()
+    {
+        return hedgePercentile;
+    }
+
+    public ClientSettings setHedgePercentile(double hedgePercentile)
+    {
+        this.hedgePercentile = hedgePercentile;
+        return this;
+    }
+
+    public int getHedgeMinSamples()
+    {
+        return hedgeMinSamples;
+    }
+
+    public ClientSettings setHedgeMinSamples(int hedgeMinSamples)
+    {
+        this.hedgeMinSamples = hedgeMinSamples;
+        return this;
+    }
+
+    public double getHedgeMaxShare()
+    {
+        return hedgeMaxShare;
+    }
+
+    public ClientSettings setHedgeMaxShare(double hedgeMaxShare)
+    {
+        this.hedgeMaxShare = hedgeMaxShare;
+        return this;
+    }
+
+    public boolean isCacheEnabled()
+    {
+        return cacheEnabled;
+    }
+
+    public ClientSettings setCacheEnabled(boolean cacheEnabled)
+    {
+        this.cacheEnabled = cacheEnabled;
+        return this;
+    }
+
+    public int getCacheMaxEntries()
+    {
+        return cacheMaxEntries;
+    }
+
+    public ClientSettings setCacheMaxEntries(int cacheMaxEntries)
+    {
+        this.cacheMaxEntries = cacheMaxEntries;
+        return this;
+    }
+
+    public long getCacheMaxObjectBytes()
+    {
+        return cacheMaxObjectBytes;
+    }
+
+    public ClientSettings setCacheMaxObjectBytes(long cacheMaxObjectBytes)
+    {
+        this.cacheMaxObjectBytes = cacheMaxObjectBytes;
+        return this;
+    }
+
+    public File getCacheDirectory()
+    {
+        return cacheDirectory;
+    }
+
+    public ClientSettings setCacheDirectory(File cacheDirectory)
+    {
+        this.cacheDirectory = cacheDirectory;
+        return this;
+    }
+
+    public long getCacheMaxDiskBytes()
+    {
+        return cacheMaxDiskBytes;
+    }
+
+    /**
+     * How many bytes of responses the cache directory may hold before the least recently used are deleted. 0 lets it
+     * grow without limit.
+     */
+    public ClientSettings setCacheMaxDiskBytes(long cacheMaxDiskBytes)
+    {
+        this.cacheMaxDiskBytes = cacheMaxDiskBytes;
+        return this;
+    }
+
+    public Cassette.Mode getCassetteMode()
+    {
+        return cassetteMode;
+    }
+
+    /**
+     * Records responses into, or replays them from, the cassette file. Null leaves the cassette out.
+     */
+    public ClientSettings setCassetteMode(Cassette.Mode cassetteMode)
+    {
+        this.cassetteMode = cassetteMode;
+        return this;
+    }
+
+    public File getCassetteFile()
+    {
+        return cassetteFile;
+    }
+
+    public ClientSettings setCassetteFile(File cassetteFile)
+    {
+        this.cassetteFile = cassetteFile;
+        return this;
+    }
+}
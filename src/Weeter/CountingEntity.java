@@ -0,0 +1,89 @@
+package Weeter;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Passes an entity through unchanged while adding every byte read from it to a set of {@link TransferStats} counters,
+ * either as wire bytes or as decoded bytes.
+ */
+class CountingEntity extends HttpEntityWrapper {
+
+    private final TransferStats.Counts[] counters;
+    private final boolean wire;
+
+    CountingEntity(HttpEntity wrappedEntity, TransferStats.Counts[] counters, boolean wire)
+    {
+        super(wrappedEntity);
+        this.counters = counters;
+        this.wire = wire;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException
+    {
+        return new FilterInputStream(super.getContent()) {
+
+            @Override
+            public int read() throws IOException {
+
+                int result = super.read();
+                if (result >= 0) {
+                    count(1);
+                }
+                return result;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+
+                int result = super.read(buffer, offset, length);
+                if (result > 0) {
+                    count(result);
+                }
+                return result;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+
+                long result = super.skip(n);
+                count(result);
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException
+    {
+        // Go through getContent so the bytes are counted
+        InputStream content = getContent();
+        try {
+            byte[] buffer = new byte[8192];
+            for (int read = content.read(buffer); read >= 0; read = content.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+        }
+        finally {
+            content.close();
+        }
+    }
+
+    private void count(long bytes)
+    {
+        for (TransferStats.Counts counts : counters) {
+            if (wire) {
+                counts.addWireBytes(bytes);
+            }
+            else {
+                counts.addDecodedBytes(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package Weeter;
+
+/**
+ * The outcome of a {@link PersonChangesCrawler} crawl.
+ */
+public class CrawlResult {
+
+    private final long crawled;
+    private final long skipped;
+    private final long failed;
+    private final long elapsedNanos;
+    private final String firstError;
+
+    public CrawlResult(long crawled, long skipped, long failed, long elapsedNanos, String firstError)
+    {
+        this.crawled = crawled;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.firstError = firstError;
+    }
+
+    /**
+     * How many people had their changes fetched and written in this crawl.
+     */
+    public long getCrawled()
+    {
+        return crawled;
+    }
+
+    /**
+     * How many IDs were passed over because they were already checkpointed or had already come up in this crawl.
+     */
+    public long getSkipped()
+    {
+        return skipped;
+    }
+
+    /**
+     * How many people could not be fetched. They are left out of the checkpoint so the next crawl tries them again.
+     */
+    public long getFailed()
+    {
+        return failed;
+    }
+
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * The first failure of the crawl, or null if nothing failed.
+     */
+    public String getFirstError()
+    {
+        return firstError;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d crawled, %d skipped, %d failed in %.2f s%s",
+                crawled, skipped, failed, elapsedNanos / 1e9, firstError == null ? "" : " (first failure: " + firstError + ")");
+    }
+}
@@ -0,0 +1,258 @@
+package Weeter;
+
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second copy of a GET that is taking longer than usual, and takes whichever answer comes back first.
+ *
+ * The latency of every GET that succeeds is kept per endpoint. Once an endpoint has enough of them, a GET to it
+ * that has not finished by the given percentile of those latencies (the 95th by default) is hedged: the same GET is
+ * sent again, the first of the two to succeed is returned, and the other is aborted. If one fails the other is
+ * still waited for. A GET that is slow because of where it landed, such as a stalled connection or a busy server,
+ * is then only as slow as the usual case plus the hedge, while only the slowest few percent are sent twice. On top of
+ * that the hedges are capped at a share of all requests, so a server that is slow for everyone is not sent double.
+ *
+ * Only GETs are hedged, since they can be sent twice without changing anything. Each copy goes through the whole
+ * client, so it is paced by the rate limiter and has its own deadline.
+ */
+public class HedgedRequests {
+
+    private final double percentile;
+    private final int minSamples;
+    private final double maxShare;
+    private final Executor executor;
+
+    private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedgesIssued = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+
+    /**
+     * A GET that can be sent more than once.
+     */
+    public interface Attempt<T> {
+
+        T call(HttpGet request) throws IOException;
+    }
+
+    /**
+     * Hedges a GET once it is slower than the given percentile (0 to 100) of the endpoint's latencies, after the
+     * endpoint has at least minSamples of them, and while hedges are under maxShare (0 to 1) of all requests.
+     * The copies are run on the executor.
+     */
+    public HedgedRequests(double percentile, int minSamples, double maxShare, Executor executor)
+    {
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.maxShare = maxShare;
+        this.executor = executor;
+    }
+
+    /**
+     * Sends the GET, and a copy of it if it runs long, and returns the first successful result.
+     */
+    public <T> T execute(String url, final Attempt<T> attempt) throws IOException
+    {
+        requests.increment();
+
+        final LatencyHistogram endpoint = latenciesOf(url);
+        final HttpGet primary = new HttpGet(url);
+        CompletableFuture<T> first = start(primary, attempt, endpoint);
+
+        long delayNanos = getHedgeDelayNanos(endpoint);
+        if (delayNanos < 0) {
+            return await(first, primary, null);
+        }
+
+        try {
+            return first.get(delayNanos, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException ex) {
+            // Slower than usual, so hedge it if the budget allows
+        }
+        catch (InterruptedException ex) {
+            primary.abort();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        }
+        catch (ExecutionException ex) {
+            throw unwrap(ex);
+        }
+
+        if (hedgesIssued.sum() >= maxShare * requests.sum()) {
+            return await(first, primary, null);
+        }
+
+        hedgesIssued.increment();
+        HttpGet hedge = new HttpGet(url);
+        CompletableFuture<T> second = start(hedge, attempt, endpoint);
+
+        // The winner is completed with the copy that succeeded, so which one it was is known as soon as it is
+        final CompletableFuture<CompletableFuture<T>> winner = new CompletableFuture<>();
+        first.whenComplete(settle(winner, first, second));
+        second.whenComplete(settle(winner, second, first));
+
+        CompletableFuture<T> done = await(winner, primary, hedge);
+        if (done == second) {
+            hedgesWon.increment();
+            primary.abort();
+        }
+        else {
+            hedge.abort();
+        }
+        return await(done, primary, hedge);
+    }
+
+    /**
+     * How long a GET to the endpoint of the given URL runs before it is hedged, or -1 if the endpoint does not have
+     * enough latencies yet.
+     */
+    public long getHedgeDelayNanos(String url)
+    {
+        return getHedgeDelayNanos(latenciesOf(url));
+    }
+
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    /**
+     * How many GETs were sent a second time.
+     */
+    public long getHedgesIssued()
+    {
+        return hedgesIssued.sum();
+    }
+
+    /**
+     * How many of the second GETs came back before the first.
+     */
+    public long getHedgesWon()
+    {
+        return hedgesWon.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d requests, %d hedged, %d hedges won", getRequests(), getHedgesIssued(), getHedgesWon());
+    }
+
+    private long getHedgeDelayNanos(LatencyHistogram endpoint)
+    {
+        if (endpoint.getCount() < minSamples) {
+            return -1;
+        }
+        return endpoint.getPercentileNanos(percentile);
+    }
+
+    private LatencyHistogram latenciesOf(String url)
+    {
+        String endpoint = TransferStats.endpointOf(URI.create(url).getRawPath());
+
+        LatencyHistogram histogram = latencies.get(endpoint);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = latencies.putIfAbsent(endpoint, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Sends one copy on the executor, adding its latency to the endpoint's if it succeeds.
+     */
+    private <T> CompletableFuture<T> start(final HttpGet request, final Attempt<T> attempt, final LatencyHistogram endpoint)
+    {
+        return CompletableFuture.supplyAsync(new Supplier<T>() {
+
+            @Override
+            public T get() {
+
+                long start = System.nanoTime();
+                try {
+                    T result = attempt.call(request);
+                    endpoint.record(System.nanoTime() - start);
+                    return result;
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }, RequestTag.propagate(executor));
+    }
+
+    /**
+     * Completes the winner with the first copy to succeed, or with the failure once the other copy has failed as well.
+     */
+    private static <T> BiConsumer<T, Throwable> settle(final CompletableFuture<CompletableFuture<T>> winner,
+                                                       final CompletableFuture<T> self, final CompletableFuture<T> other)
+    {
+        return new BiConsumer<T, Throwable>() {
+
+            @Override
+            public void accept(T result, Throwable error) {
+
+                if (error == null) {
+                    winner.complete(self);
+                }
+                else if (other.isCompletedExceptionally()) {
+                    winner.completeExceptionally(error);
+                }
+            }
+        };
+    }
+
+    private static <T> T await(CompletableFuture<T> future, HttpGet primary, HttpGet hedge) throws IOException
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException ex) {
+            primary.abort();
+            if (hedge != null) {
+                hedge.abort();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + primary.getURI());
+        }
+        catch (ExecutionException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    private static IOException unwrap(ExecutionException ex)
+    {
+        Throwable cause = ex.getCause();
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
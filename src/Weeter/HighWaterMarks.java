@@ -0,0 +1,174 @@
+package Weeter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How far each person's changes have been synced, kept in a small text file.
+ *
+ * The file holds one line per person: the ID, the date of the last sync, the time of the newest change item seen in
+ * milliseconds since the epoch, and the IDs of the items seen at exactly that time, comma separated. A "-" stands
+ * for no time or no IDs. Marks are changed in memory and written out with {@link #save()}, which replaces the file
+ * in one move, so a sync cut off part way through leaves the marks of the last save.
+ */
+public class HighWaterMarks {
+
+    private static final String HEADER = "# person syncedDate lastChangeMillis idsAtLastChange";
+    private static final String NONE = "-";
+
+    private final File file;
+    private final ConcurrentHashMap<Integer, Mark> marks = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the marks from the file, if there is one.
+     */
+    public HighWaterMarks(File file) throws IOException
+    {
+        this.file = file;
+
+        if (file.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        parse(line);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The person's mark, or null if they have never been synced.
+     */
+    public Mark get(int personId)
+    {
+        return marks.get(personId);
+    }
+
+    public void put(int personId, Mark mark)
+    {
+        marks.put(personId, mark);
+    }
+
+    public int size()
+    {
+        return marks.size();
+    }
+
+    /**
+     * Writes every mark to the file, replacing it in one move.
+     */
+    public void save() throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<Integer, Mark> entry : new TreeMap<>(marks).entrySet()) {
+                    writer.write(entry.getKey() + " " + entry.getValue());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private void parse(String line) throws IOException
+    {
+        String[] fields = line.trim().split(" +");
+        if (fields.length != 4) {
+            throw new IOException("Bad line in the high-water mark file: " + line);
+        }
+
+        try {
+            Set<String> ids = NONE.equals(fields[3])
+                    ? Collections.<String>emptySet()
+                    : new LinkedHashSet<>(Arrays.asList(fields[3].split(",")));
+
+            marks.put(Integer.parseInt(fields[0]), new Mark(LocalDate.parse(fields[1]),
+                    NONE.equals(fields[2]) ? Long.MIN_VALUE : Long.parseLong(fields[2]), ids));
+        }
+        catch (RuntimeException ex) {
+            throw new IOException("Bad line in the high-water mark file: " + line, ex);
+        }
+    }
+
+    /**
+     * One person's mark: when they were last synced, and the newest change items seen.
+     */
+    public static class Mark {
+
+        private final LocalDate syncedDate;
+        private final long lastChangeTime;
+        private final Set<String> idsAtLastChange;
+
+        public Mark(LocalDate syncedDate, long lastChangeTime, Set<String> idsAtLastChange)
+        {
+            this.syncedDate = syncedDate;
+            this.lastChangeTime = lastChangeTime;
+            this.idsAtLastChange = Collections.unmodifiableSet(new LinkedHashSet<>(idsAtLastChange));
+        }
+
+        /**
+         * The date, in UTC, of the last sync.
+         */
+        public LocalDate getSyncedDate()
+        {
+            return syncedDate;
+        }
+
+        /**
+         * The time of the newest change item seen, or Long.MIN_VALUE if none has been.
+         */
+        public long getLastChangeTime()
+        {
+            return lastChangeTime;
+        }
+
+        /**
+         * The IDs of the items seen at exactly the last change time.
+         */
+        public Set<String> getIdsAtLastChange()
+        {
+            return idsAtLastChange;
+        }
+
+        /**
+         * Whether an item is past the mark: newer than the last change, or as new but not one of the items seen then.
+         */
+        public boolean isNew(PersonChangeItem item)
+        {
+            return item.getTime() > lastChangeTime
+                    || item.getTime() == lastChangeTime && !idsAtLastChange.contains(item.getId());
+        }
+
+        @Override
+        public String toString()
+        {
+            return syncedDate + " " + (lastChangeTime == Long.MIN_VALUE ? NONE : Long.toString(lastChangeTime)) + " "
+                    + (idsAtLastChange.isEmpty() ? NONE : String.join(",", idsAtLastChange));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package Weeter;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The status code of a Movie DB API response and its body bound to a model class.
+ */
+public class JsonResponse<T> {
+
+    private final int statusCode;
+    private final T body;
+
+    public JsonResponse(int statusCode, T body)
+    {
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    /**
+     * Returns a handler that binds successful responses with the shared {@link MovieDbJson#GSON} adapter for the
+     * type, reading straight from the response stream. Error responses have a null body.
+     */
+    public static <T> ResponseHandler<JsonResponse<T>> handler(Class<T> type)
+    {
+        final TypeAdapter<T> adapter = MovieDbJson.GSON.getAdapter(type);
+
+        return new ResponseHandler<JsonResponse<T>>() {
+
+            @Override
+            public JsonResponse<T> handleResponse(HttpResponse response) throws IOException {
+
+                int statusCode = response.getStatusLine().getStatusCode();
+                HttpEntity entity = response.getEntity();
+
+                if (statusCode / 100 != 2 || entity == null) {
+                    return new JsonResponse<>(statusCode, null);
+                }
+
+                InputStream content = entity.getContent();
+                try {
+                    return new JsonResponse<>(statusCode, adapter.read(new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8))));
+                }
+                finally {
+                    content.close();
+                }
+            }
+        };
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    /**
+     * The bound body, or null when the response was not successful.
+     */
+    public T getBody()
+    {
+        return body;
+    }
+}
@@ -0,0 +1,159 @@
+package Weeter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, log-bucketed histogram of latencies in nanoseconds.
+ *
+ * Values are grouped by their highest set bit and then split into 64 linear sub-buckets within each power of two,
+ * so every recorded value is kept to within about 1.6% whatever its size, from nanoseconds to days, in a few
+ * thousand counters. Recording is a single atomic increment, so any number of threads can record without locking,
+ * and two histograms can be merged by adding their counters.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one latency. Negative values are recorded as zero.
+     */
+    public void record(long nanos)
+    {
+        long value = nanos < 0 ? 0 : nanos;
+        counts.incrementAndGet(indexOf(value));
+
+        for (long current = max.get(); value > current && !max.compareAndSet(current, value); current = max.get()) {
+            // Retry until our value is recorded or a larger one is
+        }
+    }
+
+    /**
+     * Adds everything recorded in the other histogram to this one.
+     */
+    public void merge(LatencyHistogram other)
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        long otherMax = other.max.get();
+        for (long current = max.get(); otherMax > current && !max.compareAndSet(current, otherMax); current = max.get()) {
+            // Retry until the larger maximum is recorded
+        }
+    }
+
+    public long getCount()
+    {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getMaxNanos()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns the latency at or below which the given percentage (0 to 100) of recordings fall, or 0 if nothing has
+     * been recorded. The answer is the upper end of the bucket it falls in, capped at the real maximum.
+     */
+    public long getPercentileNanos(double percentile)
+    {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns the number of recordings in each bucket, for sending a histogram elsewhere to be merged.
+     */
+    public long[] getCounts()
+    {
+        long[] result = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Adds bucket counts taken from {@link #getCounts()} on another histogram, along with its maximum.
+     */
+    public void addCounts(long[] bucketCounts, long maxNanos)
+    {
+        if (bucketCounts.length != BUCKET_COUNT) {
+            throw new IllegalArgumentException("Expected " + BUCKET_COUNT + " buckets but got " + bucketCounts.length);
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (bucketCounts[i] != 0) {
+                counts.addAndGet(i, bucketCounts[i]);
+            }
+        }
+        for (long current = max.get(); maxNanos > current && !max.compareAndSet(current, maxNanos); current = max.get()) {
+            // Retry until the larger maximum is recorded
+        }
+    }
+
+    /**
+     * Returns a one line summary such as "p50 12.1 ms, p90 ...".
+     */
+    public String summary()
+    {
+        return String.format("count %d, p50 %s, p90 %s, p99 %s, p99.9 %s, max %s", getCount(),
+                format(getPercentileNanos(50)), format(getPercentileNanos(90)), format(getPercentileNanos(99)),
+                format(getPercentileNanos(99.9)), format(getMaxNanos()));
+    }
+
+    static String format(long nanos)
+    {
+        if (nanos >= TimeUnit.SECONDS.toNanos(1)) {
+            return String.format("%.2f s", nanos / 1e9);
+        }
+        return String.format("%.2f ms", nanos / 1e6);
+    }
+
+    private static int indexOf(long value)
+    {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    private static long highestValueAt(int index)
+    {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - shift * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,235 @@
+package Weeter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a load profile from several JVMs at once, so the load is not limited by what one process can send.
+ *
+ * The coordinator listens on a loopback port and starts each {@link LoadWorker} as a process of its own, with the
+ * same classpath and the client's moviedb.* settings. The target rate and the concurrency are split evenly, and so
+ * is the rate budget (moviedb.rate.permits and moviedb.rate.burst), so together the workers ask no more of the API
+ * than one process would. Once every worker has set up its client and said it is ready, they are all given the same
+ * start time, a moment ahead; each starts a fraction of a request interval after the one before, so between them
+ * the requests arrive on the profile's schedule rather than in bursts of one per worker.
+ *
+ * When they are done, their latency histograms, status codes and errors are added into one {@link LoadStats}, and
+ * their counts into one {@link LoadResult}, as if a single generator had run the whole profile. The workers use the
+ * blocking client, and leave out the response cache and cassettes, which are files one process at a time can use.
+ */
+public class LoadCoordinator {
+
+    private static final String[] FORWARDED = {
+            "moviedb.pool.", "moviedb.timeout.", "moviedb.rate.", "moviedb.compression", "moviedb.coalesce", "moviedb.hedge"
+    };
+
+    private static final long START_DELAY_MILLIS = 250;
+    private static final long CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final LoadProfile profile;
+    private final int workers;
+
+    /**
+     * Creates a coordinator that splits the profile across the given number of worker processes.
+     */
+    public LoadCoordinator(LoadProfile profile, int workers)
+    {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("There must be at least one worker");
+        }
+
+        this.profile = profile;
+        this.workers = workers;
+    }
+
+    /**
+     * Runs the profile against the URL from every worker, counting any status other than the expected one as an
+     * error, and blocks until every worker has reported. What they saw is added to the stats.
+     */
+    public LoadResult run(String url, int expectedStatus, LoadStats stats) throws IOException, InterruptedException
+    {
+        List<Process> processes = new ArrayList<>();
+        List<Socket> sockets = new ArrayList<>();
+
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+
+            server.setSoTimeout((int) CONNECT_TIMEOUT_MILLIS);
+            for (int i = 0; i < workers; i++) {
+                processes.add(start(server.getLocalPort(), i));
+            }
+
+            BufferedReader[] in = new BufferedReader[workers];
+            Writer[] out = new Writer[workers];
+            for (int i = 0; i < workers; i++) {
+
+                Socket socket = server.accept();
+                sockets.add(socket);
+                socket.setSoTimeout((int) CONNECT_TIMEOUT_MILLIS);
+
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String hello = LoadWorker.readLine(reader);
+                if (!hello.startsWith(LoadWorker.WORKER)) {
+                    throw new IOException("Expected a worker to say which it is but got: " + hello);
+                }
+
+                int index = Integer.parseInt(hello.substring(LoadWorker.WORKER.length()));
+                if (index < 0 || index >= workers || in[index] != null) {
+                    throw new IOException("Unexpected worker " + index);
+                }
+                in[index] = reader;
+                out[index] = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+                LoadWorker.send(out[index], LoadWorker.PROTOCOL.toJson(assignment(url, expectedStatus, index)));
+            }
+
+            for (int i = 0; i < workers; i++) {
+                String ready = LoadWorker.readLine(in[i]);
+                if (!LoadWorker.READY.equals(ready)) {
+                    throw new IOException("Expected worker " + i + " to be ready but got: " + ready);
+                }
+            }
+
+            long startMillis = System.currentTimeMillis() + START_DELAY_MILLIS;
+            for (int i = 0; i < workers; i++) {
+                LoadWorker.send(out[i], LoadWorker.START + startMillis);
+            }
+
+            // Give the run as long as it is meant to take, and as long again to drain
+            int reportTimeout = (int) Math.min(Integer.MAX_VALUE,
+                    CONNECT_TIMEOUT_MILLIS + 2 * TimeUnit.NANOSECONDS.toMillis(profile.getDurationNanos()));
+
+            long requests = 0;
+            long errors = 0;
+            long elapsedNanos = 0;
+            long totalLatencyNanos = 0;
+            long maxLatencyNanos = 0;
+
+            for (int i = 0; i < workers; i++) {
+
+                sockets.get(i).setSoTimeout(reportTimeout);
+                LoadWorker.Report report = LoadWorker.PROTOCOL.fromJson(LoadWorker.readLine(in[i]), LoadWorker.Report.class);
+
+                requests += report.requests;
+                errors += report.errors;
+                elapsedNanos = Math.max(elapsedNanos, report.elapsedNanos);
+                totalLatencyNanos += report.totalLatencyNanos;
+                maxLatencyNanos = Math.max(maxLatencyNanos, report.maxLatencyNanos);
+
+                merge(stats, report);
+            }
+
+            for (Process process : processes) {
+                process.waitFor(10, TimeUnit.SECONDS);
+            }
+
+            return new LoadResult(profile, requests, errors, elapsedNanos, totalLatencyNanos, maxLatencyNanos);
+        }
+        finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    public int getWorkers()
+    {
+        return workers;
+    }
+
+    /**
+     * The worker's share: an even split of the rate and concurrency, and a start offset that puts its requests
+     * between those of the workers before it.
+     */
+    private LoadWorker.Assignment assignment(String url, int expectedStatus, int index)
+    {
+        LoadWorker.Assignment result = new LoadWorker.Assignment();
+        result.url = url;
+        result.expectedStatus = expectedStatus;
+        result.rps = profile.getTargetRps() / workers;
+        result.durationNanos = profile.getDurationNanos();
+        result.rampUpNanos = profile.getRampUpNanos();
+        result.concurrency = Math.max(1, (profile.getMaxConcurrency() + workers - 1) / workers);
+        result.phaseNanos = (long) (index * TimeUnit.SECONDS.toNanos(1) / profile.getTargetRps());
+        return result;
+    }
+
+    /**
+     * Starts one worker process with this JVM's classpath and the forwarded settings.
+     */
+    private Process start(int port, int index) throws IOException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+
+        for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+
+            String name = property.getKey().toString();
+            String value = property.getValue().toString();
+            if (!isForwarded(name)) {
+                continue;
+            }
+
+            // Each worker gets its share of the rate budget
+            if (name.equals("moviedb.rate.permits") || name.equals("moviedb.rate.burst")) {
+                int permits = Integer.parseInt(value);
+                value = Integer.toString(permits == 0 ? 0 : Math.max(1, permits / workers));
+            }
+            command.add("-D" + name + "=" + value);
+        }
+
+        // Without a setting, split the limiter's default of 40 permits; the burst follows from the share
+        if (System.getProperty("moviedb.rate.permits") == null) {
+            command.add("-Dmoviedb.rate.permits=" + Math.max(1, 40 / workers));
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LoadWorker.class.getName());
+        command.add(Integer.toString(port));
+        command.add(Integer.toString(index));
+
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private static boolean isForwarded(String name)
+    {
+        for (String prefix : FORWARDED) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void merge(LoadStats stats, LoadWorker.Report report)
+    {
+        stats.getLatencies().addCounts(report.latencyCounts, report.latencyMaxNanos);
+        stats.getServiceTimes().addCounts(report.serviceTimeCounts, report.serviceTimeMaxNanos);
+
+        for (Map.Entry<Integer, Long> entry : report.statusCounts.entrySet()) {
+            stats.addStatusCount(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : report.errorCounts.entrySet()) {
+            stats.addErrorCount(entry.getKey(), entry.getValue());
+        }
+        for (String sample : report.errorSamples) {
+            stats.addErrorSample("worker " + report.index + ": " + sample);
+        }
+    }
+}
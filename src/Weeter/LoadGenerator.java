@@ -0,0 +1,211 @@
+package Weeter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * An open-model load generator: requests are started on a fixed arrival schedule taken from a {@link LoadProfile},
+ * not whenever the previous one happens to finish.
+ *
+ * A single dispatcher thread hands each request to a pool of at most maxConcurrency workers at its scheduled time.
+ * When every worker is busy the request queues, and because latency is measured from the scheduled start rather
+ * than from when a worker picked it up, a slow server shows up as slow instead of quietly lowering the request rate
+ * (coordinated omission). Non-blocking requests can be run with {@link #runAsync} instead, which starts them from the
+ * dispatcher thread itself and needs no workers at all.
+ *
+ * The workers run with the {@link RequestTag} of the thread that started the run.
+ */
+public class LoadGenerator {
+
+    private final LoadProfile profile;
+
+    public LoadGenerator(LoadProfile profile)
+    {
+        this.profile = profile;
+    }
+
+    /**
+     * Runs the task on the profile's schedule, blocking until every request has finished.
+     */
+    public LoadResult run(final LoadTask task, final LoadListener listener) throws InterruptedException
+    {
+        int workerCount = profile.getMaxConcurrency();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "load-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final Totals totals = new Totals(listener);
+
+        long start = System.nanoTime();
+        long issued = 0;
+        try {
+
+            for (long offset = profile.scheduledStart(0); offset >= 0; offset = profile.scheduledStart(++issued)) {
+
+                final long intendedStart = start + offset;
+                awaitStart(intendedStart);
+
+                workers.execute(RequestTag.propagate(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        long actualStart = System.nanoTime();
+                        int statusCode = 0;
+                        Throwable error = null;
+
+                        try {
+                            statusCode = task.execute();
+                        }
+                        catch (Throwable ex) {
+                            error = ex;
+                        }
+
+                        totals.record(intendedStart, actualStart, System.nanoTime(), statusCode, error);
+                    }
+                }));
+            }
+
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        finally {
+            workers.shutdownNow();
+        }
+
+        return totals.result(issued, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs a non-blocking task on the profile's schedule, blocking until every request has finished.
+     *
+     * The dispatcher thread starts every request itself and nothing waits on them, so no worker threads are needed.
+     * At most maxConcurrency requests are left in flight; past that the dispatcher waits for one to finish, and as
+     * with {@link #run} the wait counts toward the latency of the requests held back.
+     */
+    public LoadResult runAsync(final AsyncLoadTask task, final LoadListener listener) throws InterruptedException
+    {
+        final Semaphore slots = new Semaphore(profile.getMaxConcurrency());
+        final Totals totals = new Totals(listener);
+
+        long start = System.nanoTime();
+        long issued = 0;
+        try {
+
+            for (long offset = profile.scheduledStart(0); offset >= 0; offset = profile.scheduledStart(++issued)) {
+
+                final long intendedStart = start + offset;
+                awaitStart(intendedStart);
+                slots.acquire();
+
+                final long actualStart = System.nanoTime();
+
+                CompletableFuture<Integer> response;
+                try {
+                    response = task.start();
+                }
+                catch (Throwable ex) {
+                    response = new CompletableFuture<>();
+                    response.completeExceptionally(ex);
+                }
+
+                response.whenComplete(new BiConsumer<Integer, Throwable>() {
+
+                    @Override
+                    public void accept(Integer statusCode, Throwable error) {
+
+                        // Report what the task failed with rather than the CompletionException around it
+                        if (error instanceof CompletionException && error.getCause() != null) {
+                            error = error.getCause();
+                        }
+
+                        try {
+                            totals.record(intendedStart, actualStart, System.nanoTime(), statusCode == null ? 0 : statusCode, error);
+                        }
+                        finally {
+                            slots.release();
+                        }
+                    }
+                });
+            }
+        }
+        finally {
+            // Wait for everything still in flight
+            slots.acquireUninterruptibly(profile.getMaxConcurrency());
+        }
+
+        return totals.result(issued, System.nanoTime() - start);
+    }
+
+    /**
+     * Parks the dispatcher until the request is due.
+     */
+    private void awaitStart(long intendedStart) throws InterruptedException
+    {
+        for (long wait = intendedStart - System.nanoTime(); wait > 0; wait = intendedStart - System.nanoTime()) {
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while dispatching load");
+            }
+        }
+    }
+
+    /**
+     * The error count and latencies of one run, added to from every thread that finishes a request.
+     */
+    private class Totals {
+
+        private final LoadListener listener;
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalLatency = new LongAdder();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        Totals(LoadListener listener)
+        {
+            this.listener = listener;
+        }
+
+        void record(long intendedStart, long actualStart, long end, int statusCode, Throwable error)
+        {
+            if (error != null) {
+                errors.increment();
+            }
+
+            long latency = end - intendedStart;
+
+            totalLatency.add(latency);
+            for (long max = maxLatency.get(); latency > max && !maxLatency.compareAndSet(max, latency); max = maxLatency.get()) {
+                // Retry until our latency is recorded or a larger one is
+            }
+
+            if (listener != null) {
+                listener.onComplete(intendedStart, actualStart, end, statusCode, error);
+            }
+        }
+
+        LoadResult result(long issued, long elapsedNanos)
+        {
+            return new LoadResult(profile, issued, errors.sum(), elapsedNanos, totalLatency.sum(), maxLatency.get());
+        }
+    }
+}
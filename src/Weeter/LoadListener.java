@@ -0,0 +1,16 @@
+package Weeter;
+
+/**
+ * Told about every request a {@link LoadGenerator} makes. Called from many threads at once.
+ */
+public interface LoadListener {
+
+    /**
+     * Called when a request finishes. Times are {@link System#nanoTime()} values; the latency that counts is
+     * end - intendedStart, which includes any time the request spent waiting for a free worker.
+     *
+     * @param statusCode the status the request returned, or 0 if it threw
+     * @param error what the request threw, or null
+     */
+    void onComplete(long intendedStart, long actualStart, long end, int statusCode, Throwable error);
+}
@@ -0,0 +1,92 @@
+package Weeter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How hard and for how long a {@link LoadGenerator} drives the API.
+ *
+ * The profile can be read from the following system properties:
+ * moviedb.load.rps - the target number of requests started per second (default 10)
+ * moviedb.load.durationSeconds - how long to keep starting requests, ramp-up included (default 3)
+ * moviedb.load.rampUpSeconds - how long to take to climb from nothing to the target rate (default 0)
+ * moviedb.load.concurrency - the most requests allowed in flight at once (default given by the caller)
+ */
+public class LoadProfile {
+
+    private final double targetRps;
+    private final long durationNanos;
+    private final long rampUpNanos;
+    private final int maxConcurrency;
+
+    public LoadProfile(double targetRps, long duration, long rampUp, TimeUnit unit, int maxConcurrency)
+    {
+        if (targetRps <= 0 || duration <= 0 || rampUp < 0 || rampUp > duration || maxConcurrency <= 0) {
+            throw new IllegalArgumentException("The rate, duration and concurrency must be positive, and the ramp-up no longer than the duration");
+        }
+
+        this.targetRps = targetRps;
+        this.durationNanos = unit.toNanos(duration);
+        this.rampUpNanos = unit.toNanos(rampUp);
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Reads the profile from the moviedb.load.* system properties.
+     */
+    public static LoadProfile fromSystemProperties(int defaultConcurrency)
+    {
+        return new LoadProfile(
+                Double.parseDouble(System.getProperty("moviedb.load.rps", "10")),
+                Long.getLong("moviedb.load.durationSeconds", 3),
+                Long.getLong("moviedb.load.rampUpSeconds", 0),
+                TimeUnit.SECONDS,
+                Integer.getInteger("moviedb.load.concurrency", defaultConcurrency));
+    }
+
+    public double getTargetRps()
+    {
+        return targetRps;
+    }
+
+    public long getDurationNanos()
+    {
+        return durationNanos;
+    }
+
+    public long getRampUpNanos()
+    {
+        return rampUpNanos;
+    }
+
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns when the given request (counting from zero) is due, in nanoseconds from the start of the run, or -1 if
+     * it falls after the end. The rate climbs linearly through the ramp-up and then holds steady.
+     */
+    public long scheduledStart(long index)
+    {
+        double perNano = targetRps / TimeUnit.SECONDS.toNanos(1);
+        double rampRequests = perNano * rampUpNanos / 2;
+
+        double offset;
+        if (index < rampRequests) {
+            offset = Math.sqrt(2.0 * rampUpNanos * index / perNano);
+        }
+        else {
+            offset = rampUpNanos + (index - rampRequests) / perNano;
+        }
+
+        return offset < durationNanos ? (long) offset : -1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%.1f req/s for %d s (%d s ramp-up), at most %d in flight", targetRps,
+                TimeUnit.NANOSECONDS.toSeconds(durationNanos), TimeUnit.NANOSECONDS.toSeconds(rampUpNanos), maxConcurrency);
+    }
+}
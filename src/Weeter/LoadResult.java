@@ -0,0 +1,85 @@
+package Weeter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link LoadGenerator} run.
+ */
+public class LoadResult {
+
+    private final LoadProfile profile;
+    private final long requests;
+    private final long errors;
+    private final long elapsedNanos;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+
+    public LoadResult(LoadProfile profile, long requests, long errors, long elapsedNanos, long totalLatencyNanos, long maxLatencyNanos)
+    {
+        this.profile = profile;
+        this.requests = requests;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    public LoadProfile getProfile()
+    {
+        return profile;
+    }
+
+    public long getRequests()
+    {
+        return requests;
+    }
+
+    /**
+     * How many requests threw, either because the call failed or because the response was not what was expected.
+     */
+    public long getErrors()
+    {
+        return errors;
+    }
+
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * The completed requests per second over the whole run, including the time to drain the last of them.
+     */
+    public double getThroughput()
+    {
+        return elapsedNanos == 0 ? 0 : requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * The sum of the times from each request's scheduled start to its end, for adding runs together.
+     */
+    public long getTotalLatencyNanos()
+    {
+        return totalLatencyNanos;
+    }
+
+    /**
+     * The mean time from each request's scheduled start to its end.
+     */
+    public long getMeanLatencyNanos()
+    {
+        return requests == 0 ? 0 : totalLatencyNanos / requests;
+    }
+
+    public long getMaxLatencyNanos()
+    {
+        return maxLatencyNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d requests (%d errors) in %.2f s, %.1f req/s, latency mean %.1f ms, max %.1f ms [%s]",
+                requests, errors, elapsedNanos / 1e9, getThroughput(), getMeanLatencyNanos() / 1e6, maxLatencyNanos / 1e6, profile);
+    }
+}
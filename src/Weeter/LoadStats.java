@@ -0,0 +1,179 @@
+package Weeter;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects what happened during a load run: the latency of every request, how many returned each status code, and
+ * how many threw each type of exception.
+ *
+ * Everything on the recording path is lock-free. Latencies go into a {@link LatencyHistogram}, and the counters are
+ * {@link LongAdder}s, which stripe their updates across cells so threads finishing at the same moment do not contend.
+ */
+public class LoadStats implements LoadListener {
+
+    private static final int MAX_STATUS = 600;
+    private static final int MAX_SAMPLES = 10;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LatencyHistogram serviceTimes = new LatencyHistogram();
+    private final AtomicReferenceArray<LongAdder> statusCounts = new AtomicReferenceArray<>(MAX_STATUS);
+    private final ConcurrentHashMap<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    private final Queue<String> errorSamples = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sampleCount = new AtomicInteger();
+
+    @Override
+    public void onComplete(long intendedStart, long actualStart, long end, int statusCode, Throwable error)
+    {
+        latencies.record(end - intendedStart);
+        serviceTimes.record(end - actualStart);
+
+        if (statusCode > 0) {
+            counterFor(statusCode).increment();
+        }
+
+        if (error != null) {
+            recordError(error);
+        }
+    }
+
+    /**
+     * Records a status code without a latency, such as one reported by another process.
+     */
+    public void addStatusCount(int statusCode, long count)
+    {
+        counterFor(statusCode).add(count);
+    }
+
+    /**
+     * Records errors of the given type without a latency, such as ones reported by another process.
+     */
+    public void addErrorCount(String type, long count)
+    {
+        errors.add(count);
+        errorCountFor(type).add(count);
+    }
+
+    /**
+     * Keeps the message of an error, such as one reported by another process, if there are not enough already.
+     */
+    public void addErrorSample(String sample)
+    {
+        if (sampleCount.getAndIncrement() < MAX_SAMPLES) {
+            errorSamples.add(sample);
+        }
+    }
+
+    /**
+     * Time from each request's scheduled start to its end, including any time spent queued for a worker.
+     */
+    public LatencyHistogram getLatencies()
+    {
+        return latencies;
+    }
+
+    /**
+     * Time from when a worker picked each request up to its end.
+     */
+    public LatencyHistogram getServiceTimes()
+    {
+        return serviceTimes;
+    }
+
+    public long getErrorCount()
+    {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of responses seen for each status code, in order.
+     */
+    public Map<Integer, Long> getStatusCounts()
+    {
+        Map<Integer, Long> result = new TreeMap<>();
+        for (int i = 0; i < MAX_STATUS; i++) {
+            LongAdder counter = statusCounts.get(i);
+            if (counter != null && counter.sum() != 0) {
+                result.put(i, counter.sum());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of errors seen for each exception type, in order.
+     */
+    public Map<String, Long> getErrorCounts()
+    {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : errorCounts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the messages of the first few errors, which is usually enough to see what went wrong.
+     */
+    public String getErrorSamples()
+    {
+        StringBuilder result = new StringBuilder();
+        for (String sample : errorSamples) {
+            result.append(sample).append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns a multi-line report of the latencies and counts.
+     */
+    public String summary()
+    {
+        return "latency:      " + latencies.summary() + "\n"
+                + "service time: " + serviceTimes.summary() + "\n"
+                + "status codes: " + getStatusCounts() + "\n"
+                + "errors:       " + getErrorCounts();
+    }
+
+    private void recordError(Throwable error)
+    {
+        errors.increment();
+        errorCountFor(error.getClass().getSimpleName()).increment();
+
+        if (sampleCount.getAndIncrement() < MAX_SAMPLES) {
+            errorSamples.add(error.getClass().getSimpleName() + ": " + error.getMessage());
+        }
+    }
+
+    private LongAdder counterFor(int statusCode)
+    {
+        int index = statusCode >= 0 && statusCode < MAX_STATUS ? statusCode : 0;
+
+        LongAdder counter = statusCounts.get(index);
+        if (counter == null) {
+            statusCounts.compareAndSet(index, null, new LongAdder());
+            counter = statusCounts.get(index);
+        }
+        return counter;
+    }
+
+    private LongAdder errorCountFor(String type)
+    {
+        // Look first so the common case never takes the map's bin lock
+        LongAdder counter = errorCounts.get(type);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            LongAdder existing = errorCounts.putIfAbsent(type, created);
+            counter = existing == null ? created : existing;
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,12 @@
+package Weeter;
+
+/**
+ * One request made by a {@link LoadGenerator}.
+ */
+public interface LoadTask {
+
+    /**
+     * Makes the request and returns its status code. Throws if the response was not what was expected.
+     */
+    int execute() throws Exception;
+}
@@ -0,0 +1,176 @@
+package Weeter;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One process of a distributed load run, started and driven by a {@link LoadCoordinator}.
+ *
+ * It connects back to the coordinator on the loopback interface and talks to it in lines of text: it says which
+ * worker it is, reads its share of the load as JSON, sets up its client and says it is ready, waits for the start
+ * time, runs its share with a {@link LoadGenerator}, and sends back everything its {@link LoadStats} collected as JSON.
+ * The latency histograms go back bucket by bucket, so the coordinator can merge them without losing anything. The
+ * messages are bound by reflection with a Gson of their own, leaving {@link MovieDbJson#GSON} to the API models and
+ * their hand-written adapters.
+ *
+ * It is run as:
+ * java -cp ... Weeter.LoadWorker coordinatorPort workerIndex
+ */
+public class LoadWorker {
+
+    static final String READY = "READY";
+    static final String START = "START ";
+    static final String WORKER = "WORKER ";
+
+    // Binds the messages between the coordinator and its workers
+    static final Gson PROTOCOL = new Gson();
+
+    /**
+     * Connects to the coordinator on the given port and runs the share of the load it hands out.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int port = Integer.parseInt(args[0]);
+        int index = Integer.parseInt(args[1]);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            send(out, WORKER + index);
+            Assignment assignment = PROTOCOL.fromJson(readLine(in), Assignment.class);
+
+            MovieDbClient client = MovieDbClient.shared();
+            try {
+                send(out, READY);
+
+                String start = readLine(in);
+                if (!start.startsWith(START)) {
+                    throw new IOException("Expected the start time from the coordinator but got: " + start);
+                }
+
+                Report report = run(client, assignment, Long.parseLong(start.substring(START.length())), index);
+                send(out, PROTOCOL.toJson(report));
+            }
+            finally {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Waits for the start time, plus this worker's phase so the workers' requests interleave rather than land
+     * together, and runs the assignment.
+     */
+    static Report run(final MovieDbClient client, final Assignment assignment, long startMillis, int index) throws InterruptedException
+    {
+        LoadProfile profile = new LoadProfile(assignment.rps, assignment.durationNanos, assignment.rampUpNanos,
+                TimeUnit.NANOSECONDS, assignment.concurrency);
+
+        long waitNanos = TimeUnit.MILLISECONDS.toNanos(startMillis - System.currentTimeMillis()) + assignment.phaseNanos;
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+
+        LoadStats stats = new LoadStats();
+        LoadResult result = new LoadGenerator(profile).run(new LoadTask() {
+
+            @Override
+            public int execute() throws Exception {
+
+                ApiResponse response = client.get(assignment.url);
+                if (response.getStatusCode() != assignment.expectedStatus) {
+                    throw new IllegalStateException("Expected status " + assignment.expectedStatus + " but got " + response.getStatusCode());
+                }
+                return response.getStatusCode();
+            }
+        }, stats);
+
+        Report report = new Report();
+        report.index = index;
+        report.requests = result.getRequests();
+        report.errors = result.getErrors();
+        report.elapsedNanos = result.getElapsedNanos();
+        report.totalLatencyNanos = result.getTotalLatencyNanos();
+        report.maxLatencyNanos = result.getMaxLatencyNanos();
+        report.latencyCounts = stats.getLatencies().getCounts();
+        report.latencyMaxNanos = stats.getLatencies().getMaxNanos();
+        report.serviceTimeCounts = stats.getServiceTimes().getCounts();
+        report.serviceTimeMaxNanos = stats.getServiceTimes().getMaxNanos();
+        report.statusCounts = stats.getStatusCounts();
+        report.errorCounts = stats.getErrorCounts();
+
+        report.errorSamples = new ArrayList<>();
+        for (String sample : stats.getErrorSamples().split("\n")) {
+            if (!sample.isEmpty()) {
+                report.errorSamples.add(sample);
+            }
+        }
+        return report;
+    }
+
+    static void send(Writer out, String line) throws IOException
+    {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+    }
+
+    static String readLine(BufferedReader in) throws IOException
+    {
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("The connection closed before the run was over");
+        }
+        return line;
+    }
+
+    /**
+     * One worker's share of the load.
+     */
+    static class Assignment {
+
+        String url;
+        int expectedStatus;
+        double rps;
+        long durationNanos;
+        long rampUpNanos;
+        int concurrency;
+        long phaseNanos;
+    }
+
+    /**
+     * What one worker saw, in a form that can be merged with the others.
+     */
+    static class Report {
+
+        int index;
+        long requests;
+        long errors;
+        long elapsedNanos;
+        long totalLatencyNanos;
+        long maxLatencyNanos;
+        long[] latencyCounts;
+        long latencyMaxNanos;
+        long[] serviceTimeCounts;
+        long serviceTimeMaxNanos;
+        Map<Integer, Long> statusCounts = Collections.emptyMap();
+        Map<String, Long> errorCounts = Collections.emptyMap();
+        List<String> errorSamples = Collections.emptyList();
+    }
+}
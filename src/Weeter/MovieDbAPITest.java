@@ -1,32 +1,148 @@
 package Weeter;
 
-import org.apache.http.*;
-import org.apache.http.client.HttpClient;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.junit.*;
-import com.google.gson.*;
-
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 
+// The tests run at the same time, sharing the client's rate budget (see ParallelMethodsRunner)
+@RunWith(ParallelMethodsRunner.class)
 public class MovieDbAPITest {
 
-    private static final String APITOKEN = "";
-    private static final String BASEURL = "https://api.themoviedb.org/3/";
+    private static final String APITOKEN = System.getProperty("moviedb.apiToken", "");
+    private static final String TMDBURL = System.getProperty("moviedb.baseUrl", "https://api.themoviedb.org/3/");
     private static final String TOKENPARAM = "?api_key=" + APITOKEN;
 
-    // Setting this any hire results in a 429 Too Many Requests error on subsequent tests.
-    private static final int LOAD_LIMIT = 29;
+    // Every request is paced by the shared rate limiter (see moviedb.rate.*), so this can go above the API's
+    // budget without causing a 429 Too Many Requests error on subsequent tests; the extra requests just wait their turn.
+    // Run capacityProbeTest (-Dmoviedb.probe=true) to find what the API will actually take rather than trusting this.
+    private static final int LOAD_LIMIT = Integer.getInteger("moviedb.load.limit", 29);
+
+    private static final MovieDbClient CLIENT = MovieDbClient.shared();
+
+    // Set -Dmoviedb.transport=async to run basicAPILoadTest on the non-blocking client
+    private static final boolean ASYNC = "async".equalsIgnoreCase(System.getProperty("moviedb.transport", "blocking"));
+
+    // What each kind of response must look like, checked in a single pass as the body streams in (see ResponseSpec).
+    // The changes are a fluid response, so which ones come back cannot be guaranteed; only their shape is checked
+    private static final ResponseValidator CHANGES = new ResponseSpec()
+            .status(200)
+            .require("changes")
+            .arraySize("changes", 0, Integer.MAX_VALUE)
+            .require("changes[*].key")
+            .compile();
+    private static final ResponseValidator NO_CHANGES = new ResponseSpec()
+            .status(200)
+            .onlyMembers("", "changes")
+            .require("changes")
+            .arraySize("changes", 0, 0)
+            .compile();
+    private static final ResponseValidator UNAUTHORIZED = new ResponseSpec().status(401).compile();
+    private static final ResponseValidator SERVER_ERROR = new ResponseSpec().status(500).compile();
+
+    // Set -Dmoviedb.stub=true to run against the local stand-in server instead of the real API
+    private static StubMovieDbServer stub;
+    private static String BASEURL = TMDBURL;
+
+
+    // Tags every request with the name of the test making it, so the client's transfer counts can be broken down by test
+    @Rule
+    public final TestRule requestTag = new TestWatcher() {
+
+        private String previous;
+
+        @Override
+        protected void starting(Description description) {
+            previous = RequestTag.set(description.getMethodName());
+        }
+
+        @Override
+        protected void finished(Description description) {
+            RequestTag.restore(previous);
+        }
+    };
+
+    // Keeps each test's timings in -Dmoviedb.trend.file, if it is set, and checks them against earlier runs (see TimingTrendRule)
+    @ClassRule
+    public static final TimingTrendRule timingTrend = new TimingTrendRule();
+
+    @Rule
+    public final TestRule testTimer = timingTrend.timer();
+
+
+    /**
+     * Starts the local stand-in server when the suite is run with -Dmoviedb.stub=true and points every test at it.
+     * The stub can be slowed down or made to throttle with moviedb.stub.latencyMillis, moviedb.stub.throttleLimit
+     * (requests per 10 seconds) and moviedb.stub.throttleProbability, made to send Cache-Control with
+     * moviedb.stub.maxAgeSeconds, and its pages sized with moviedb.stub.pageSize.
+     */
+    @BeforeClass
+    public static void startStubServer() throws IOException
+    {
+        if (Boolean.getBoolean("moviedb.stub")) {
+
+            stub = new StubMovieDbServer(APITOKEN);
+            stub.setLatencyMillis(Long.getLong("moviedb.stub.latencyMillis", 0));
+            stub.setThrottleLimit(Integer.getInteger("moviedb.stub.throttleLimit", 0), 10000);
+            stub.setThrottleProbability(Double.parseDouble(System.getProperty("moviedb.stub.throttleProbability", "0")));
+            stub.setMaxAgeSeconds(Integer.getInteger("moviedb.stub.maxAgeSeconds", -1));
+            stub.setPageSize(Integer.getInteger("moviedb.stub.pageSize", 20));
+            stub.start(Integer.getInteger("moviedb.stub.port", 0));
+
+            BASEURL = stub.getBaseUrl();
+        }
+    }
 
+    /**
+     * Prints the response bytes that came over the wire and were read, per endpoint and per test.
+     */
+    @AfterClass
+    public static void printTransferStats()
+    {
+        System.out.println("transfer " + CLIENT.getTransferStats().summary());
+        if (ASYNC) {
+            System.out.println("async transfer " + AsyncMovieDbClient.shared().getTransferStats().summary());
+        }
+    }
 
-    private volatile boolean hasFailed = false;
-    private volatile List<String> message = new ArrayList<>();
+    @AfterClass
+    public static void stopStubServer()
+    {
+        if (stub != null) {
+            stub.close();
+            stub = null;
+            BASEURL = TMDBURL;
+        }
+    }
 
     /**
      * This is the basic API test with a valid API token, which is the only required field.
@@ -37,7 +153,7 @@ public class MovieDbAPITest {
      * 2. Execute the request
      * 3. Check to make sure a response code of 200 was received
      * 4. Verifies that the result contains the "changes" key
-     * 5. If "changes" item is not empty, checks to make sure it contains a "key" object in the response
+     * 5. Checks to make sure every entry in "changes" contains a "key" object in the response
      *
      * Expected Results:
      * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
@@ -47,43 +163,10 @@ public class MovieDbAPITest {
     {
         try {
 
-            HttpClient client = HttpClientBuilder.create().build();
-
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/1245/changes" + TOKENPARAM);
-
-            HttpResponse response = client.execute(request);
-
-            Assert.assertEquals("The Movie DB API did not return a successful response as expected. Status returned: " + response.getStatusLine().getStatusCode(), 200, response.getStatusLine().getStatusCode());
-
-            BufferedReader rd = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
-
-            StringBuffer result = new StringBuffer();
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                result.append(line);
-            }
-
-            Map resultJson = new Gson().fromJson(result.toString(), Map.class);
-
-            Assert.assertTrue("Response API did not contain the expected default 'changes' key.", resultJson.containsKey("changes"));
-
-            List<Object> changes = (List<Object>) resultJson.get("changes");
-
-
-            // Because this is a fluid response, I am wrapping this in a conditional because I am not sure when you will look at this, and cannot
-            // guarantee any one result for this test. Normally, I would use another API to make changes to this person and look for the changes
-            // but, seeing as this is not test data that I would be messing with, and that I do not appear to have appropriate permissions to add
-            // and remove changes to a person, I will simply leave it to a very shallow test
-            if(changes.size() != 0)
-            {
-                Map<String, String> keys = (Map<String, String>)changes.get(0);
-
-                Assert.assertTrue("API result is missing the 'key' object in the response.", keys.containsKey("key"));
-            }
-
+            ValidationResult response = CLIENT.get(BASEURL + "person/1245/changes" + TOKENPARAM, CHANGES.handler());
 
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
 
         }
         catch(Exception ex)
@@ -113,14 +196,10 @@ public class MovieDbAPITest {
             String startDateToken = "&start_date=NOT_A_DATE";
             String endDateToken = "&end_date=NOT_A_DATE";
 
-            HttpClient client = HttpClientBuilder.create().build();
-
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/1245/changes" + TOKENPARAM + startDateToken + endDateToken);
-
-            HttpResponse response = client.execute(request);
+            ValidationResult response = CLIENT.get(BASEURL + "person/1245/changes" + TOKENPARAM + startDateToken + endDateToken, SERVER_ERROR.handler());
 
-            Assert.assertEquals("The Movie DB API did not return the expected error response. Status returned: " + response.getStatusLine().getStatusCode(), 500, response.getStatusLine().getStatusCode());
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
 
         }
         catch(Exception ex)
@@ -147,32 +226,10 @@ public class MovieDbAPITest {
     {
         try {
 
-            HttpClient client = HttpClientBuilder.create().build();
-
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/not_valid/changes" + TOKENPARAM);
-
-            HttpResponse response = client.execute(request);
-
-            Assert.assertEquals("The Movie DB API did not return a success response as expected. Status returned: " + response.getStatusLine().getStatusCode(), 200, response.getStatusLine().getStatusCode());
-
-            BufferedReader rd = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
-
-            StringBuffer result = new StringBuffer();
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                result.append(line);
-            }
-
-            Map resultJson = new Gson().fromJson(result.toString(), Map.class);
-
-            Assert.assertTrue(resultJson.containsKey("changes"));
-
-            // Verify it is an empty response
-            Assert.assertEquals("An empty 'changes' tag was expected, however the result was: " + result.toString(), "{\"changes\":[]}", result.toString());
-
+            ValidationResult response = CLIENT.get(BASEURL + "person/not_valid/changes" + TOKENPARAM, NO_CHANGES.handler());
 
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
 
         }
         catch(Exception ex)
@@ -198,14 +255,10 @@ public class MovieDbAPITest {
     {
         try {
 
-            HttpClient client = HttpClientBuilder.create().build();
-
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/3/changes" + "?api_key=ffffffffffffffffffffffffffffffff");
-
-            HttpResponse response = client.execute(request);
+            ValidationResult response = CLIENT.get(BASEURL + "person/3/changes" + "?api_key=ffffffffffffffffffffffffffffffff", UNAUTHORIZED.handler());
 
-            Assert.assertEquals("The Movie DB API did not return the expected error response. Status returned: " + response.getStatusLine().getStatusCode(), 401, response.getStatusLine().getStatusCode());
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
 
         }
         catch(Exception ex)
@@ -231,14 +284,10 @@ public class MovieDbAPITest {
     {
         try {
 
-            HttpClient client = HttpClientBuilder.create().build();
-
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/3/changes" + "?api_key=e109253d2212");
-
-            HttpResponse response = client.execute(request);
+            ValidationResult response = CLIENT.get(BASEURL + "person/3/changes" + "?api_key=e109253d2212", UNAUTHORIZED.handler());
 
-            Assert.assertEquals("The Movie DB API did not return the expected error response. Status returned: " + response.getStatusLine().getStatusCode(), 401, response.getStatusLine().getStatusCode());
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
 
         }
         catch(Exception ex)
@@ -265,14 +314,10 @@ public class MovieDbAPITest {
     {
         try {
 
-            HttpClient client = HttpClientBuilder.create().build();
-
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/3/changes" + "?api_key=e109253d2212e109253d2212e109253d2212");
-
-            HttpResponse response = client.execute(request);
+            ValidationResult response = CLIENT.get(BASEURL + "person/3/changes" + "?api_key=e109253d2212e109253d2212e109253d2212", UNAUTHORIZED.handler());
 
-            Assert.assertEquals("The Movie DB API did not return the expected error response. Status returned: " + response.getStatusLine().getStatusCode(), 401, response.getStatusLine().getStatusCode());
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
 
         }
         catch(Exception ex)
@@ -297,14 +342,10 @@ public class MovieDbAPITest {
     {
         try {
 
-            HttpClient client = HttpClientBuilder.create().build();
-
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/3/changes");
-
-            HttpResponse response = client.execute(request);
+            ValidationResult response = CLIENT.get(BASEURL + "person/3/changes", UNAUTHORIZED.handler());
 
-            Assert.assertEquals("The Movie DB API did not return the expected error response. Status returned: " + response.getStatusLine().getStatusCode(), 401, response.getStatusLine().getStatusCode());
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
 
         }
         catch(Exception ex)
@@ -315,359 +356,1362 @@ public class MovieDbAPITest {
     }
 
     /**
-     * This is the same as the basic API test, except executes a bunch of connections at the same time using Threads
-     *
+     * This walks the full change history of the last two weeks page by page, and checks it against the same history asked for in one go
      * Steps:
-     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
-     * 2. Execute the request on a bunch of different threads
-     * 3. Check to make sure a response code of 200 was received for each thread
-     * 4. Verifies that the result contains the "changes" key for each thread
-     * 5. If "changes" item is not empty, checks to make sure it contains a "key" object in the response of each thread
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token and a 14 day date range
+     * 2. Walk every page of the changes with a pager, which fetches the next page while the current one is being read
+     * 3. Check to make sure every change has a "key" and that no change item shows up twice
+     * 4. Execute the same request without paging
+     * 5. Check to make sure both returned the same number of change items
      *
      * Expected Results:
-     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results on each of the requests
-     * from each thread
+     * The pages together hold exactly the changes of the unpaged response, with no item repeated
      */
     @Test
-    public void basicAPILoadTest()
+    public void pagedChangesHistory()
     {
-
-        List<Thread> threads = new ArrayList<>();
         try {
 
-            for(int i = 0; i < LOAD_LIMIT; i++) {
+            LocalDate endDate = LocalDate.now(ZoneOffset.UTC);
+            String dateTokens = "&start_date=" + endDate.minusDays(13) + "&end_date=" + endDate;
+
+            // Generate URL
+            String url = BASEURL + "person/1245/changes" + TOKENPARAM + dateTokens;
 
-                final int thread_number = i+1;
-                Thread thread = new Thread(new Runnable() {
+            Set<String> itemIds = new HashSet<>();
+            int itemCount = 0;
 
-                    @Override
-                    public void run() {
+            PersonChangesPager pager = new PersonChangesPager(CLIENT, url);
+            try {
+                while (pager.hasNext()) {
 
-                        try {
+                    PersonChange change = pager.next();
+                    Assert.assertTrue("API result is missing the 'key' object on page " + pager.getPage() + ".", change.getKey() != null);
 
-                            int threadNumber = thread_number;
-                            HttpClient client = HttpClientBuilder.create().build();
+                    for (PersonChangeItem item : change.getItems()) {
+                        Assert.assertTrue("Change item " + item.getId() + " was returned more than once.", itemIds.add(item.getId()));
+                        itemCount++;
+                    }
+                }
+            }
+            finally {
+                pager.close();
+            }
 
-                            // Generate URL
-                            HttpGet request = new HttpGet(BASEURL + "person/1245/changes" + TOKENPARAM);
+            JsonResponse<PersonChanges> response = CLIENT.get(url, PersonChanges.HANDLER);
 
-                            HttpResponse response = client.execute(request);
+            Assert.assertEquals("The Movie DB API did not return a successful response as expected. Status returned: " + response.getStatusCode(), 200, response.getStatusCode());
 
-                            if(response.getStatusLine().getStatusCode() != 200)
-                            {
-                                hasFailed = true;
-                                message.add("The Movie DB API did not return a successful response as expected. Thread number: " + threadNumber + "\n");
+            int expectedCount = 0;
+            for (PersonChange change : response.getBody().getChanges()) {
+                expectedCount += change.getItems().size();
+            }
 
-                            }
-                            else {
+            Assert.assertEquals("The " + pager.getPagesFetched() + " pages did not hold the same changes as the unpaged response.", expectedCount, itemCount);
 
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in pagedChangesHistory. Err: " + ex.getMessage());
+        }
 
-                                BufferedReader rd = new BufferedReader(
-                                        new InputStreamReader(response.getEntity().getContent()));
+    }
+
+    /**
+     * This pulls two months of changes, more than the API returns in one request, by fetching 14 day windows in parallel and merging them
+     * Steps:
+     * 1. Fetch the changes of person 1245 (Scarlett Johansson) over the last 60 days with a valid API Token
+     * 2. Check to make sure each key shows up only once in the merged result
+     * 3. Check to make sure no change item shows up twice
+     * 4. Check to make sure the items of each key are in time order
+     *
+     * Expected Results:
+     * The windows merge into one change per key, with every item once and in time order
+     */
+    @Test
+    public void historyAcrossDateWindows()
+    {
+        try {
 
-                                StringBuffer result = new StringBuffer();
-                                String line = "";
-                                while ((line = rd.readLine()) != null) {
-                                    result.append(line);
-                                }
+            LocalDate endDate = LocalDate.now(ZoneOffset.UTC);
+            LocalDate startDate = endDate.minusDays(59);
 
-                                Map resultJson = new Gson().fromJson(result.toString(), Map.class);
+            PersonChanges history = new PersonChangesHistory(CLIENT, BASEURL, TOKENPARAM).fetch(1245, startDate, endDate);
 
-                                if (!resultJson.containsKey("changes")) {
-                                    hasFailed = true;
-                                    message.add("Response API did not contain the expected default 'changes' key. Thread number: " + threadNumber + "\n");
+            Set<String> keys = new HashSet<>();
+            Set<String> itemIds = new HashSet<>();
 
-                                }
-                                else {
+            for (PersonChange change : history.getChanges()) {
 
-                                    List<Object> changes = (List<Object>) resultJson.get("changes");
+                Assert.assertTrue("The key '" + change.getKey() + "' was not merged into one change.", keys.add(change.getKey()));
 
+                long previousTime = Long.MIN_VALUE;
+                for (PersonChangeItem item : change.getItems()) {
+                    Assert.assertTrue("Change item " + item.getId() + " was returned more than once.", itemIds.add(item.getId()));
+                    Assert.assertTrue("The items of '" + change.getKey() + "' are not in time order.", item.getTime() >= previousTime);
+                    previousTime = item.getTime();
+                }
+            }
 
-                                    // Because this is a fluid response, I am wrapping this in a conditional because I am not sure when you will look at this, and cannot
-                                    // guarantee any one result for this test. Normally, I would use another API to make changes to this person and look for the changes
-                                    // but, seeing as this is not test data that I would be messing with, and that I do not appear to have appropriate permissions to add
-                                    // and remove changes to a person, I will simply leave it to a very shallow test
-                                    if (changes.size() != 0) {
-                                        Map<String, String> keys = (Map<String, String>) changes.get(0);
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in historyAcrossDateWindows. Err: " + ex.getMessage());
+        }
 
-                                        if(keys.containsKey("keys"))
-                                        {
-                                            hasFailed = true;
-                                            message.add("API result is missing the 'key' object in the response. Thread number: " + threadNumber + "\n");
+    }
 
-                                        }
-                                    }
-                                }
-                            }
-                        } catch (Exception ex) {
+    /**
+     * This loads the changes of a few people into a columnar change store, on and off the heap, and checks scans of it against the parsed changes
+     * Steps:
+     * 1. Fetch the changes of persons 1245, 3 and 287 over the last 14 days with a valid API Token
+     * 2. Add every change item to a change store on the heap and to one off the heap
+     * 3. Check to make sure each store holds one row per item and that scans by person and by key count the same items as the parsed changes
+     * 4. Check to make sure a scan over the first half of the time range counts the items from that half
+     * 5. Check to make sure every row reads back with the ID, key and action it was added with
+     *
+     * Expected Results:
+     * Both stores give back exactly the items they were given, whichever way they are scanned
+     */
+    @Test
+    public void columnarChangeStore()
+    {
+        try {
+
+            LocalDate endDate = LocalDate.now(ZoneOffset.UTC);
+            LocalDate startDate = endDate.minusDays(13);
+            String dateTokens = "&start_date=" + startDate + "&end_date=" + endDate;
+
+            long fromTime = startDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            long toTime = endDate.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            long middleTime = fromTime + (toTime - fromTime) / 2;
+
+            ChangeStore[] stores = {new ChangeStore(16), ChangeStore.offHeap(16)};
+            final Set<String> addedItems = new HashSet<>();
+            int total = 0;
 
-                            hasFailed = true;
-                            message.add("An exception was thrown in basicAPILoadTest. Err: " + ex.getMessage() + "\n");
+            for (int personId : new int[] {1245, 3, 287}) {
 
+                // Generate URL
+                String url = BASEURL + "person/" + personId + "/changes" + TOKENPARAM + dateTokens;
+
+                JsonResponse<PersonChanges> response = CLIENT.get(url, PersonChanges.HANDLER);
+                Assert.assertEquals("The Movie DB API did not return a successful response as expected. Status returned: " + response.getStatusCode(), 200, response.getStatusCode());
+
+                int personItems = 0;
+                int firstHalfItems = 0;
+                for (PersonChange change : response.getBody().getChanges()) {
+                    for (PersonChangeItem item : change.getItems()) {
+                        addedItems.add(personId + " " + item.getId() + " " + change.getKey() + " " + item.getAction());
+                        personItems++;
+                        if (item.getTime() < middleTime) {
+                            firstHalfItems++;
                         }
                     }
-                });
+                }
+                total += personItems;
 
-                threads.add(thread);
-                thread.start();
-            }
+                for (ChangeStore store : stores) {
 
+                    Assert.assertEquals("Not every item was added to the store.", personItems, store.add(personId, response.getBody()));
+                    Assert.assertEquals("A scan for person " + personId + " did not find their items.", personItems, store.count(personId, null, Long.MIN_VALUE, Long.MAX_VALUE));
+                    Assert.assertEquals("A scan of the first half of the range did not find its items.", firstHalfItems, store.count(personId, null, fromTime, middleTime));
 
-            for(Thread thread : threads)
-            {
-                thread.join();
+                    for (PersonChange change : response.getBody().getChanges()) {
+                        Assert.assertEquals("A scan for the key '" + change.getKey() + "' did not find its items.",
+                                change.getItems().size(), store.count(personId, change.getKey(), Long.MIN_VALUE, Long.MAX_VALUE));
+                    }
+                }
             }
 
-            Assert.assertFalse(message.toString(), hasFailed);
+            for (ChangeStore store : stores) {
+
+                Assert.assertEquals("The store does not hold one row per item.", total, store.size());
+                Assert.assertEquals("A scan for a key that was never added found rows.", 0, store.count(ChangeStore.ANY_PERSON, "no_such_key", Long.MIN_VALUE, Long.MAX_VALUE));
 
+                final Set<String> readItems = new HashSet<>();
+                store.scan(ChangeStore.ANY_PERSON, null, Long.MIN_VALUE, Long.MAX_VALUE, new ChangeStore.Visitor() {
+
+                    @Override
+                    public void visit(ChangeStore store, int row) {
+                        readItems.add(store.getPersonId(row) + " " + store.getItemId(row) + " " + store.getKey(row) + " " + store.getAction(row));
+                    }
+                });
+                Assert.assertEquals("The rows did not read back as they were added" + (store.isOffHeap() ? " off the heap." : "."), addedItems, readItems);
+            }
 
         }
         catch(Exception ex)
         {
-            Assert.fail("An exception was thrown in basicAPILoadTest. Err: " + ex.getMessage());
+            Assert.fail("An exception was thrown in columnarChangeStore. Err: " + ex.getMessage());
         }
 
     }
 
-
     /**
-     * This is the same as the basic API test with a valid API token, but also includes empty dates tags, which are optional parameters
+     * This syncs the changes of a few people twice a day apart, and checks the second sync only adds what is new
      * Steps:
-     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
-     * 2. Add empty "start_date" and "end_date" params
-     * 3. Execute the request
-     * 4. Check to make sure a response code of 200 was received
-     * 5. Verifies that the result contains the "changes" key
-     * 6. If "changes" item is not empty, checks to make sure it contains a "key" object in the response
+     * 1. Sync persons 1245 and 3 with a valid API Token as of yesterday into a store that fails, and check no mark was saved
+     * 2. Sync them again as of yesterday, into a change store, with a temporary high-water mark file
+     * 3. Load the marks back from the file and sync the same people as of today
+     * 4. Check to make sure each of the syncs as of today needed one request
+     * 5. Fetch the whole range from the first sync's start to today in one go, and check the store holds exactly its items, each once
+     * 6. Sync once more as of today
+     * 7. Check to make sure nothing more was added
      *
      * Expected Results:
-     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     * The syncs together add every change once, and syncing again with nothing new adds nothing
      */
     @Test
-    public void emptyDatesTag()
+    public void incrementalChangeSync()
     {
         try {
 
-            String startDateToken = "&start_date=";
-            String endDateToken = "&end_date=";
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            List<Integer> personIds = Arrays.asList(1245, 3);
+            int initialDays = 14;
 
-            HttpClient client = HttpClientBuilder.create().build();
+            PersonChangesHistory history = new PersonChangesHistory(CLIENT, BASEURL, TOKENPARAM);
+            ChangeStore store = new ChangeStore(64);
 
-            // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/1245/changes" + TOKENPARAM + startDateToken + endDateToken);
+            File marksFile = File.createTempFile("person-changes", ".marks");
+            try {
 
-            HttpResponse response = client.execute(request);
+                ChangeStore failing = new ChangeStore(64) {
 
-            Assert.assertEquals("The Movie DB API did not return a success response as expected. Status returned: " + response.getStatusLine().getStatusCode(), 200, response.getStatusLine().getStatusCode());
+                    @Override
+                    public int add(int personId, PersonChanges changes) {
+                        throw new IllegalStateException("The change store is full");
+                    }
+                };
+                try {
+                    new PersonChangesSync(history, new HighWaterMarks(marksFile), initialDays).syncAll(personIds, today.minusDays(1), failing);
+                    Assert.fail("A sync into a store that cannot take the items did not fail.");
+                }
+                catch (IllegalStateException ex) {
+                    Assert.assertEquals("A mark was moved on for items that were never stored.", 0, new HighWaterMarks(marksFile).size());
+                }
 
-            BufferedReader rd = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
+                new PersonChangesSync(history, new HighWaterMarks(marksFile), initialDays).syncAll(personIds, today.minusDays(1), store);
 
-            StringBuffer result = new StringBuffer();
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                result.append(line);
-            }
+                PersonChangesSync sync = new PersonChangesSync(history, new HighWaterMarks(marksFile), initialDays);
+                sync.syncAll(personIds, today, store);
+                Assert.assertEquals("The second sync did not pick up from the saved marks: " + sync, personIds.size(), sync.getRequests());
+
+                for (int personId : personIds) {
+
+                    PersonChanges whole = history.fetch(personId, today.minusDays(initialDays), today);
+
+                    Set<String> expected = new HashSet<>();
+                    for (PersonChange change : whole.getChanges()) {
+                        for (PersonChangeItem item : change.getItems()) {
+                            expected.add(item.getId());
+                        }
+                    }
 
-            Map resultJson = new Gson().fromJson(result.toString(), Map.class);
+                    final List<String> synced = new ArrayList<>();
+                    store.scan(personId, null, Long.MIN_VALUE, Long.MAX_VALUE, new ChangeStore.Visitor() {
 
-            Assert.assertTrue(resultJson.containsKey("changes"));
+                        @Override
+                        public void visit(ChangeStore store, int row) {
+                            synced.add(store.getItemId(row));
+                        }
+                    });
+
+                    Assert.assertEquals("The syncs of person " + personId + " added an item more than once.", synced.size(), new HashSet<>(synced).size());
+                    Assert.assertEquals("The syncs of person " + personId + " did not add every change once.", expected, new HashSet<>(synced));
+                }
+
+                int size = store.size();
+                Assert.assertEquals("Syncing again added items that were already there.", 0, sync.syncAll(personIds, today, store));
+                Assert.assertEquals("Syncing again changed the store.", size, store.size());
+            }
+            finally {
+                marksFile.delete();
+            }
 
         }
         catch(Exception ex)
         {
-            Assert.fail("An exception was thrown in emptyDatesTag. Err: " + ex.getMessage());
+            Assert.fail("An exception was thrown in incrementalChangeSync. Err: " + ex.getMessage());
         }
 
     }
 
-
     /**
-     * This is the same as the basic API test with a valid API token, but also includes a different language param, which is optional
+     * This crawls the changes of a few people to disk, then crawls them again to check the checkpoint is picked up
      * Steps:
-     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
-     * 2. Add a language of "es-MX" which is Mexico Spanish
-     * 3. Execute the request
-     * 4. Check to make sure a response code of 200 was received
-     * 5. Verifies that the result contains the "changes" key
-     * 6. If "changes" item is not empty, checks to make sure it contains a "key" object in the response
+     * 1. Crawl the changes of persons 1245, 3 and 287, with 3 listed twice, into a temporary output and checkpoint file
+     * 2. Check to make sure each person was fetched once, with the repeated ID skipped and nothing failed
+     * 3. Check to make sure the output has one line per person
+     * 4. Crawl the same IDs again with the same files
+     * 5. Check to make sure nothing was fetched the second time
      *
      * Expected Results:
-     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     * The first crawl writes the three people, and the second resumes from the checkpoint and finds nothing left to do
      */
     @Test
-    public void differentLanguageTest()
+    public void crawlPersonChanges()
     {
         try {
 
-            String language = "&language=es-MX";
+            File output = File.createTempFile("person-changes", ".jsonl");
+            File checkpoint = File.createTempFile("person-changes", ".checkpoint");
+            try {
+
+                List<Integer> personIds = Arrays.asList(1245, 3, 287, 3);
+                PersonChangesCrawler crawler = new PersonChangesCrawler(CLIENT, BASEURL, TOKENPARAM, 2);
+
+                CrawlResult result = crawler.crawl(personIds.iterator(), output, checkpoint);
+
+                Assert.assertEquals("Not every person could be crawled: " + result, 0, result.getFailed());
+                Assert.assertEquals("Each person should have been fetched once: " + result, 3, result.getCrawled());
+                Assert.assertEquals("The repeated person should have been skipped: " + result, 1, result.getSkipped());
+                Assert.assertEquals("The output should have one line per person.", 3, Files.readAllLines(output.toPath()).size());
+
+                CrawlResult resumed = crawler.crawl(personIds.iterator(), output, checkpoint);
+
+                Assert.assertEquals("The checkpoint was not used to resume the crawl: " + resumed, 0, resumed.getCrawled());
+                Assert.assertEquals("The output should not have grown on resume.", 3, Files.readAllLines(output.toPath()).size());
+            }
+            finally {
+                output.delete();
+                checkpoint.delete();
+            }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in crawlPersonChanges. Err: " + ex.getMessage());
+        }
 
-            HttpClient client = HttpClientBuilder.create().build();
+    }
+
+    /**
+     * This is the same as the basic API test, except it keeps starting requests at a steady rate for a while using a load generator
+     *
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Start the request at the target rate (moviedb.load.rps) for the configured duration (moviedb.load.durationSeconds),
+     *    with at most moviedb.load.concurrency requests (LOAD_LIMIT by default) in flight at once, on the blocking client or,
+     *    with moviedb.transport=async, on the non-blocking one
+     * 3. Check to make sure a response code of 200 was received for each request
+     * 4. Verifies that the result contains the "changes" key for each request
+     * 5. Checks to make sure every entry in "changes" contains a "key" object in the response of each request
+     * 6. Prints the throughput, latency percentiles and the count of each status code and error of the run
+     *
+     * Expected Results:
+     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results on each of the requests
+     */
+    @Test
+    public void basicAPILoadTest()
+    {
+        try {
 
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/1245/changes" + TOKENPARAM + language);
+            final String url = BASEURL + "person/1245/changes" + TOKENPARAM;
 
-            HttpResponse response = client.execute(request);
+            LoadGenerator generator = new LoadGenerator(LoadProfile.fromSystemProperties(LOAD_LIMIT));
 
-            Assert.assertEquals("The Movie DB API did not return a success response as expected. Status returned: " + response.getStatusLine().getStatusCode(), 200, response.getStatusLine().getStatusCode());
+            LoadStats stats = new LoadStats();
 
-            BufferedReader rd = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
+            LoadResult result;
+            if (ASYNC) {
 
-            StringBuffer result = new StringBuffer();
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                result.append(line);
-            }
+                // Every request is started from the dispatcher thread and none of them holds a thread while in flight
+                result = generator.runAsync(new AsyncLoadTask() {
 
-            Map resultJson = new Gson().fromJson(result.toString(), Map.class);
+                    @Override
+                    public CompletableFuture<Integer> start() {
 
-            Assert.assertTrue(resultJson.containsKey("changes"));
+                        return AsyncMovieDbClient.shared().getAsync(url, CHANGES.handler()).thenApply(new Function<ValidationResult, Integer>() {
 
-            List<Object> changes = (List<Object>) resultJson.get("changes");
+                            @Override
+                            public Integer apply(ValidationResult response) {
+                                return checkLoadResponse(response);
+                            }
+                        });
+                    }
+                }, stats);
+            }
+            else {
 
+                result = generator.run(new LoadTask() {
 
-            // Because this is a fluid response, I am wrapping this in a conditional because I am not sure when you will look at this, and cannot
-            // guarantee any one result for this test. Normally, I would use another API to make changes to this person and look for the changes
-            // but, seeing as this is not test data that I would be messing with, and that I do not appear to have appropriate permissions to add
-            // and remove changes to a person, I will simply leave it to a very shallow test
-            if(changes.size() != 0)
-            {
-                Map<String, String> keys = (Map<String, String>)changes.get(0);
+                    @Override
+                    public int execute() throws Exception {
+                        return checkLoadResponse(CLIENT.get(url, CHANGES.handler()));
+                    }
+                }, stats);
+            }
 
-                Assert.assertTrue("API result is missing the 'key' object in the response.", keys.containsKey("key"));
+            System.out.println("basicAPILoadTest: " + result + "\n" + stats.summary());
+            if (CLIENT.getCacheStats() != null) {
+                System.out.println("cache:        " + CLIENT.getCacheStats());
+            }
+            if (CLIENT.getSingleFlight() != null) {
+                System.out.println("coalescing:   " + CLIENT.getSingleFlight());
+            }
+            if (CLIENT.getHedgedRequests() != null) {
+                System.out.println("hedging:      " + CLIENT.getHedgedRequests());
             }
+            if (ASYNC) {
+                System.out.println("async:        at most " + AsyncMovieDbClient.shared().getMaxInFlight() + " requests in flight");
+                if (AsyncMovieDbClient.shared().getSingleFlight() != null) {
+                    System.out.println("async coalescing: " + AsyncMovieDbClient.shared().getSingleFlight());
+                }
+            }
+
+            Assert.assertEquals("Some requests failed in basicAPILoadTest:\n" + stats.getErrorSamples(), 0, stats.getErrorCount());
 
         }
         catch(Exception ex)
         {
-            Assert.fail("An exception was thrown in differentLanguageTest. Err: " + ex.getMessage());
+            Assert.fail("An exception was thrown in basicAPILoadTest. Err: " + ex.getMessage());
         }
 
     }
 
 
     /**
-     * This is the same as the basic API test with a valid API token, but also includes an empty language param, which is optional
+     * This is the same as the load test, except the load is split across several worker JVMs. It only runs with
+     * -Dmoviedb.load.workers set to 2 or more.
+     *
      * Steps:
      * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
-     * 2. Add an empty language parameter
-     * 3. Execute the request
-     * 4. Check to make sure a response code of 200 was received
-     * 5. Verifies that the result contains the "changes" key
-     * 6. If "changes" item is not empty, checks to make sure it contains a "key" object in the response
+     * 2. Start moviedb.load.workers worker processes, each with an even share of the target rate, the concurrency and
+     *    the rate limit, and start them all at the same moment
+     * 3. Check to make sure a response code of 200 was received for each request of every worker
+     * 4. Merge the workers' latency histograms and status counts and print them with the combined throughput
      *
      * Expected Results:
-     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     * Every worker's requests get a 200, and the merged counts add up to the requests made
      */
     @Test
-    public void emptyLanguageTest()
+    public void distributedLoadTest()
     {
+        int workers = Integer.getInteger("moviedb.load.workers", 0);
+        Assume.assumeTrue("Distributed load test is only run with -Dmoviedb.load.workers=2 or more", workers > 1);
+
         try {
 
-            String language = "&language=";
+            // Generate URL
+            String url = BASEURL + "person/1245/changes" + TOKENPARAM;
 
-            HttpClient client = HttpClientBuilder.create().build();
+            LoadStats stats = new LoadStats();
+            LoadResult result = new LoadCoordinator(LoadProfile.fromSystemProperties(LOAD_LIMIT), workers).run(url, 200, stats);
 
-            // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/1245/changes" + TOKENPARAM + language);
+            System.out.println("distributedLoadTest (" + workers + " workers): " + result + "\n" + stats.summary());
 
-            HttpResponse response = client.execute(request);
+            Assert.assertEquals("Some requests failed in distributedLoadTest:\n" + stats.getErrorSamples(), 0, stats.getErrorCount());
+            Assert.assertEquals(Long.valueOf(result.getRequests()), stats.getStatusCounts().get(200));
+            Assert.assertEquals(result.getRequests(), stats.getLatencies().getCount());
 
-            Assert.assertEquals("The Movie DB API did not return a success response as expected. Status returned: " + response.getStatusLine().getStatusCode(), 200, response.getStatusLine().getStatusCode());
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in distributedLoadTest. Err: " + ex.getMessage());
+        }
 
-            BufferedReader rd = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
+    }
 
-            StringBuffer result = new StringBuffer();
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                result.append(line);
-            }
 
-            Map resultJson = new Gson().fromJson(result.toString(), Map.class);
+    /**
+     * This is a long, slow run of the requests the other tests make, watching the client and the JVM for leaks. It only
+     * runs with -Dmoviedb.soak=true.
+     *
+     * Steps:
+     * 1. Build the URLs of a valid request, an invalid API token, invalid dates, an invalid person ID and empty dates
+     * 2. Start sampling the heap, GC, open file descriptors, connections and threads every moviedb.soak.sampleSeconds
+     *    (default 30)
+     * 3. Take turns with the requests at moviedb.soak.rps (default 2) for moviedb.soak.minutes (default 120)
+     * 4. Check each request got the response its test expects
+     * 5. Print the first and last samples and check none of the figures kept climbing
+     *
+     * Expected Results:
+     * Every request gets its expected response, and the heap left after GC, the GC rate, file descriptors,
+     * connections and threads all level off rather than trending upward.
+     */
+    @Test
+    public void soakTest()
+    {
+        Assume.assumeTrue("Soak test is only run with -Dmoviedb.soak=true", Boolean.getBoolean("moviedb.soak"));
 
-            Assert.assertTrue(resultJson.containsKey("changes"));
+        try {
 
-            List<Object> changes = (List<Object>) resultJson.get("changes");
+            // Generate URLs, each with the response its own test expects
+            final String[] urls = {
+                    BASEURL + "person/1245/changes" + TOKENPARAM,
+                    BASEURL + "person/3/changes" + "?api_key=ffffffffffffffffffffffffffffffff",
+                    BASEURL + "person/1245/changes" + TOKENPARAM + "&start_date=NOT_A_DATE&end_date=NOT_A_DATE",
+                    BASEURL + "person/not_valid/changes" + TOKENPARAM,
+                    BASEURL + "person/1245/changes" + TOKENPARAM + "&start_date=&end_date="
+            };
+            final ResponseValidator[] expected = { CHANGES, UNAUTHORIZED, SERVER_ERROR, NO_CHANGES, CHANGES };
+
+            LoadProfile profile = new LoadProfile(
+                    Double.parseDouble(System.getProperty("moviedb.soak.rps", "2")),
+                    TimeUnit.MINUTES.toSeconds(Long.getLong("moviedb.soak.minutes", 120)),
+                    0,
+                    TimeUnit.SECONDS,
+                    LOAD_LIMIT);
+
+            final AtomicInteger next = new AtomicInteger();
+            LoadStats stats = new LoadStats();
+
+            SoakMonitor monitor = new SoakMonitor(CLIENT, TimeUnit.SECONDS.toMillis(Long.getLong("moviedb.soak.sampleSeconds", 30)));
+            monitor.start();
+
+            LoadResult result;
+            try {
+                result = new LoadGenerator(profile).run(new LoadTask() {
 
+                    @Override
+                    public int execute() throws Exception {
 
-            // Because this is a fluid response, I am wrapping this in a conditional because I am not sure when you will look at this, and cannot
-            // guarantee any one result for this test. Normally, I would use another API to make changes to this person and look for the changes
-            // but, seeing as this is not test data that I would be messing with, and that I do not appear to have appropriate permissions to add
-            // and remove changes to a person, I will simply leave it to a very shallow test
-            if(changes.size() != 0)
-            {
-                Map<String, String> keys = (Map<String, String>)changes.get(0);
+                        int request = Math.floorMod(next.getAndIncrement(), urls.length);
+                        ValidationResult response = CLIENT.get(urls[request], expected[request].handler());
 
-                Assert.assertTrue("API result is missing the 'key' object in the response.", keys.containsKey("key"));
+                        if (!response.passed()) {
+                            throw new IllegalStateException("Unexpected response from " + urls[request] + ": " + response);
+                        }
+                        return response.getStatusCode();
+                    }
+                }, stats);
             }
+            finally {
+                monitor.stop();
+            }
+
+            System.out.println("soakTest: " + result + "\n" + stats.summary() + "\n" + monitor.summary());
 
+            Assert.assertEquals("Some requests failed in soakTest:\n" + stats.getErrorSamples(), 0, stats.getErrorCount());
 
+            List<String> trends = monitor.findUpwardTrends();
+            Assert.assertTrue("Resources kept growing over the soak test: " + trends, trends.isEmpty());
 
         }
         catch(Exception ex)
         {
-            Assert.fail("An exception was thrown in emptyLanguageTest. Err: " + ex.getMessage());
+            Assert.fail("An exception was thrown in soakTest. Err: " + ex.getMessage());
         }
 
     }
 
+
     /**
-     * This is the same as the basic API test with a valid API token, but also includes an invalid language code,
+     * Checks one response of basicAPILoadTest and returns its status code, throwing if it was not what was expected.
+     */
+    private static int checkLoadResponse(ValidationResult response)
+    {
+        if (!response.passed()) {
+            throw new IllegalStateException("The Movie DB API did not return the expected response. " + response);
+        }
+        return response.getStatusCode();
+    }
+
+
+    /**
+     * This finds how many requests the API will take at once, rather than relying on LOAD_LIMIT. It only runs with -Dmoviedb.probe=true.
+     *
      * Steps:
      * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
-     * 2. Add an invalid language parameter of XX
-     * 3. Execute the request
-     * 4. Check to make sure a response code of 200 was received
-     * 5. Verifies that the result contains the "changes" key
-     * 6. If "changes" item is not empty, checks to make sure it contains a "key" object in the response
+     * 2. Create a client of its own with no rate limiter and no retries, so the API's own limits are what it runs into
+     * 3. Send the request from a growing number of workers at once, adding a few after each step that goes cleanly and halving
+     *    them after each step with 429s, errors or a jump in latency (see CapacityProbe for the moviedb.probe.* settings)
+     * 4. Check to make sure every response that was not throttled was a 200 with a "changes" key whose entries each have a "key"
+     * 5. Print the operating point, the latency curve and every step
      *
      * Expected Results:
-     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     * The probe finds a level of concurrency that runs without congestion, which can be used as moviedb.load.concurrency
      */
     @Test
-    public void invalidLanguageTest()
+    public void capacityProbeTest()
     {
-        try {
-
-            String language = "&language=XX";
+        Assume.assumeTrue("Capacity probe is only run with -Dmoviedb.probe=true", Boolean.getBoolean("moviedb.probe"));
 
-            HttpClient client = HttpClientBuilder.create().build();
+        try {
 
             // Generate URL
-            HttpGet request = new HttpGet(BASEURL + "person/1245/changes" + TOKENPARAM + language);
+            final String url = BASEURL + "person/1245/changes" + TOKENPARAM;
+
+            CapacityProbe probe = CapacityProbe.fromSystemProperties();
 
-            HttpResponse response = client.execute(request);
+            final MovieDbClient client = new MovieDbClient(CapacityProbe.clientSettings(probe.getMaxConcurrency()));
+            CapacityResult result;
+            try {
+                result = probe.probe(new LoadTask() {
 
-            Assert.assertEquals("The Movie DB API did not return a success response as expected. Status returned: " + response.getStatusLine().getStatusCode(), 200, response.getStatusLine().getStatusCode());
+                    @Override
+                    public int execute() throws Exception {
 
-            BufferedReader rd = new BufferedReader(
-                    new InputStreamReader(response.getEntity().getContent()));
+                        ValidationResult response = client.get(url, CHANGES.handler());
 
-            StringBuffer result = new StringBuffer();
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                result.append(line);
+                        // Being throttled is what the probe is looking for, not a failure
+                        if (response.getStatusCode() == 429) {
+                            return response.getStatusCode();
+                        }
+                        return checkLoadResponse(response);
+                    }
+                });
+            }
+            finally {
+                client.close();
             }
 
-            Map resultJson = new Gson().fromJson(result.toString(), Map.class);
+            System.out.println("capacityProbeTest:\n" + result.summary());
 
-            Assert.assertTrue(resultJson.containsKey("changes"));
+            CapacityStep operatingPoint = result.getOperatingPoint();
+            Assert.assertNotNull("The capacity probe did not find a level of concurrency that ran without congestion.", operatingPoint);
 
-            List<Object> changes = (List<Object>) resultJson.get("changes");
+            System.out.println("capacityProbeTest: run the load test with -Dmoviedb.load.concurrency=" + operatingPoint.getConcurrency()
+                    + " and -Dmoviedb.load.rps=" + (int) operatingPoint.getThroughput() + " to stay at this operating point");
 
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in capacityProbeTest. Err: " + ex.getMessage());
+        }
 
-            // Because this is a fluid response, I am wrapping this in a conditional because I am not sure when you will look at this, and cannot
-            // guarantee any one result for this test. Normally, I would use another API to make changes to this person and look for the changes
-            // but, seeing as this is not test data that I would be messing with, and that I do not appear to have appropriate permissions to add
-            // and remove changes to a person, I will simply leave it to a very shallow test
-            if(changes.size() != 0)
-            {
-                Map<String, String> keys = (Map<String, String>)changes.get(0);
+    }
 
-                Assert.assertTrue("API result is missing the 'key' object in the response.", keys.containsKey("key"));
+
+    /**
+     * This sends the same request many times at once through a client that coalesces identical requests, and checks they share one call
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Create a client with coalescing turned on
+     * 3. Start the request from several threads at once, with a handler that holds the first response until the other requests have joined it
+     * 4. Check to make sure every caller got the same successful result
+     * 5. Check to make sure only one request was made and the others were coalesced into it
+     *
+     * Expected Results:
+     * One request reaches the server, every caller gets its 200 response with a "changes" key, and the rest are counted as coalesced
+     */
+    @Test
+    public void coalescedIdenticalRequests()
+    {
+        try {
+
+            final int callers = 8;
+
+            // Generate URL
+            String url = BASEURL + "person/1245/changes" + TOKENPARAM;
+
+            final MovieDbClient client = new MovieDbClient(ClientSettings.fromSystemProperties()
+                    .setCoalescingEnabled(true)
+                    .setCacheEnabled(false)
+                    .setCassetteMode(null));
+            try {
+
+                ResponseHandler<ValidationResult> waitForTheRest = new ResponseHandler<ValidationResult>() {
+
+                    @Override
+                    public ValidationResult handleResponse(HttpResponse response) throws IOException {
+
+                        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                        while (client.getSingleFlight().getCoalesced() < callers - 1 && System.nanoTime() < deadline) {
+                            try {
+                                Thread.sleep(5);
+                            }
+                            catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                                break;
+                            }
+                        }
+                        return CHANGES.handler().handleResponse(response);
+                    }
+                };
+
+                List<CompletableFuture<ValidationResult>> responses = new ArrayList<>();
+                for (int i = 0; i < callers; i++) {
+                    responses.add(client.getAsync(url, waitForTheRest));
+                }
+
+                Set<ValidationResult> distinct = new HashSet<>();
+                for (CompletableFuture<ValidationResult> response : responses) {
+
+                    ValidationResult result = response.join();
+                    Assert.assertTrue("The Movie DB API did not return the expected response. " + result, result.passed());
+                    distinct.add(result);
+                }
+
+                Assert.assertEquals("The callers did not all share one result.", 1, distinct.size());
+                Assert.assertEquals("More than one request was made: " + client.getSingleFlight(), 1, client.getSingleFlight().getRequests());
+                Assert.assertEquals("Not every other caller was coalesced: " + client.getSingleFlight(), callers - 1, client.getSingleFlight().getCoalesced());
+            }
+            finally {
+                client.close();
+            }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in coalescedIdenticalRequests. Err: " + ex.getMessage());
+        }
+
+    }
+
+
+    /**
+     * This fetches the same changes through the response cache on a stand-in server of its own, and checks each way the cache can answer
+     * Steps:
+     * 1. Start a stand-in server that marks responses fresh for a minute, and build the URL for person 1245 (Scarlett Johansson) on it
+     * 2. Create a client with the cache on and a temporary cache directory, and execute the request twice
+     * 3. Check to make sure the first was a miss and the second a hit that never reached the server
+     * 4. Wait a second, execute it again asking for a response no older than 0 seconds, and check the server answered the revalidation with a 304
+     * 5. Create a new client on the same directory and execute the request, and check it was answered from disk
+     * 6. Create a client whose directory may only hold the entries already in it, fetch person 3, and check older entries were deleted to make room
+     *
+     * Expected Results:
+     * A miss, a hit, a 304 revalidation and a hit from disk, every response passing the same checks, and a disk tier that stays within its limit
+     */
+    @Test
+    public void tieredResponseCache()
+    {
+        StubMovieDbServer server = new StubMovieDbServer(APITOKEN);
+        try {
+            server.setMaxAgeSeconds(60);
+            server.start(0);
+
+            // Generate URL
+            String url = server.getBaseUrl() + "person/1245/changes" + TOKENPARAM;
+
+            File directory = Files.createTempDirectory("moviedb-cache").toFile();
+            ClientSettings settings = ClientSettings.fromSystemProperties()
+                    .setRateLimiter(null)
+                    .setCassetteMode(null)
+                    .setCoalescingEnabled(false)
+                    .setHedgingEnabled(false)
+                    .setCacheEnabled(true)
+                    .setCacheDirectory(directory)
+                    .setCacheMaxDiskBytes(0);
+            try {
+
+                MovieDbClient client = new MovieDbClient(settings);
+                try {
+                    checkLoadResponse(client.get(url, CHANGES.handler()));
+                    checkLoadResponse(client.get(url, CHANGES.handler()));
+                    Assert.assertEquals("The first request was not a miss: " + client.getCacheStats(), 1, client.getCacheStats().getMisses());
+                    Assert.assertEquals("The second request was not a hit: " + client.getCacheStats(), 1, client.getCacheStats().getHits());
+                    Assert.assertEquals("A cache hit went to the server.", 1, server.getRequestCount());
+
+                    // Ages are counted in whole seconds, so let the cached copy turn a second old before asking for a newer one
+                    Thread.sleep(1100);
+                    HttpGet revalidate = new HttpGet(url);
+                    revalidate.setHeader("Cache-Control", "max-age=0");
+                    checkLoadResponse(client.execute(revalidate, CHANGES.handler()));
+                    Assert.assertEquals("The request was not revalidated: " + client.getCacheStats(), 1, client.getCacheStats().getValidated());
+                    Assert.assertEquals("The server did not answer the revalidation with a 304.", 1, server.getNotModifiedCount());
+                }
+                finally {
+                    client.close();
+                }
+
+                long requests = server.getRequestCount();
+                client = new MovieDbClient(settings);
+                try {
+                    checkLoadResponse(client.get(url, CHANGES.handler()));
+                    Assert.assertEquals("A new client did not reuse the cache on disk: " + client.getCacheStats(), 1, client.getCacheStats().getHits());
+                    Assert.assertEquals("A hit from disk went to the server.", requests, server.getRequestCount());
+                }
+                finally {
+                    client.close();
+                }
+
+                long limit = cacheDirectoryBytes(directory);
+                client = new MovieDbClient(settings.setCacheMaxDiskBytes(limit));
+                try {
+                    checkLoadResponse(client.get(server.getBaseUrl() + "person/3/changes" + TOKENPARAM, CHANGES.handler()));
+                    long bytes = cacheDirectoryBytes(directory);
+                    Assert.assertTrue("The cache directory holds " + bytes + " bytes, over its limit of " + limit, bytes <= limit);
+                }
+                finally {
+                    client.close();
+                }
+            }
+            finally {
+                for (File file : directory.listFiles()) {
+                    file.delete();
+                }
+                directory.delete();
+            }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in tieredResponseCache. Err: " + ex.getMessage());
+        }
+        finally {
+            server.close();
+        }
+
+    }
+
+
+    /**
+     * Adds up the entries tieredResponseCache left in its cache directory.
+     */
+    private static long cacheDirectoryBytes(File directory)
+    {
+        long total = 0;
+        for (File file : directory.listFiles()) {
+            if (file.getName().endsWith(".entry")) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+
+    /**
+     * This checks the timing trend against made-up runs, without any requests
+     * Steps:
+     * 1. Add three runs of two tests to a temporary trend file: one test taking about 100 ms with a p50 latency of 10 ms, the other about 2 ms
+     * 2. Check a run where the first test takes 200 ms and its p50 latency is 40 ms, and the second takes 10 ms
+     * 3. Check a run where the first test takes 140 ms, and a run of a test with no earlier runs taking a long time
+     * 4. Add a fourth run to a trend keeping three, and load the file back
+     *
+     * Expected Results:
+     * Only the first test's duration and p50 latency are flagged in step 2; the second test is over 50% slower but by less than 20 ms.
+     * Nothing is flagged in step 3, and the file keeps only the last three runs
+     */
+    @Test
+    public void timingTrendRegressions()
+    {
+        try {
+
+            File file = File.createTempFile("moviedb", ".trend");
+            try {
+
+                TimingTrend trend = new TimingTrend(file, 3, 3);
+                double[] durations = { 100, 110, 90 };
+                for (int run = 0; run < durations.length; run++) {
+                    trend.append(Arrays.asList(
+                            new TimingTrend.Entry(run, "slowTest", durations[run], 4, 10, 20),
+                            new TimingTrend.Entry(run, "quickTest", 2, 0, 0, 0)));
+                }
+
+                List<String> regressions = trend.findRegressions(Arrays.asList(
+                        new TimingTrend.Entry(3, "slowTest", 200, 4, 40, 20),
+                        new TimingTrend.Entry(3, "quickTest", 10, 0, 0, 0)), 0.5, 20);
+
+                Assert.assertEquals("Unexpected regressions: " + regressions, 2, regressions.size());
+                Assert.assertTrue("The slower duration was not flagged: " + regressions, regressions.get(0).startsWith("slowTest duration"));
+                Assert.assertTrue("The slower p50 latency was not flagged: " + regressions, regressions.get(1).startsWith("slowTest p50 request latency"));
+
+                regressions = trend.findRegressions(Arrays.asList(
+                        new TimingTrend.Entry(3, "slowTest", 140, 4, 10, 20),
+                        new TimingTrend.Entry(3, "newTest", 5000, 0, 0, 0)), 0.5, 20);
+                Assert.assertTrue("Regressions were flagged within the threshold or without a baseline: " + regressions, regressions.isEmpty());
+
+                trend.append(Arrays.asList(new TimingTrend.Entry(3, "slowTest", 140, 4, 10, 20)));
+                Assert.assertEquals("The trend file did not keep only the last runs.", 3, new TimingTrend(file, 3, 3).getRunCount());
+            }
+            finally {
+                file.delete();
+            }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in timingTrendRegressions. Err: " + ex.getMessage());
+        }
+
+    }
+
+
+    /**
+     * This records a response into a cassette and replays it with nothing listening at the URL's host
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Open two clients recording into the same temporary cassette file, and check they share one cassette
+     * 3. Execute the request through one of them and close the other
+     * 4. Check to make sure the response was recorded, and that the file cannot be opened for replay while it is being recorded
+     * 5. Close the recording, and check the file was cut back to its last record and the API token was not written into it
+     * 6. Execute the request with a different API token, on a port nothing listens on, through a client replaying the file
+     *
+     * Expected Results:
+     * The recorded response is replayed without the network or the recorded token, and still passes the same checks
+     */
+    @Test
+    public void cassetteRecordAndReplay()
+    {
+        try {
+
+            // Generate URL
+            String url = BASEURL + "person/1245/changes" + TOKENPARAM;
+            String offlineUrl = BASEURL.replaceFirst("^https?://[^/]+", "http://127.0.0.1:1")
+                    + "person/1245/changes?api_key=ffffffffffffffffffffffffffffffff";
+
+            File file = File.createTempFile("moviedb", ".cassette");
+            ClientSettings settings = ClientSettings.fromSystemProperties()
+                    .setCacheEnabled(false)
+                    .setCassetteFile(file);
+            try {
+
+                MovieDbClient recorder = new MovieDbClient(settings.setCassetteMode(Cassette.Mode.RECORD));
+                try {
+                    MovieDbClient other = new MovieDbClient(settings);
+                    try {
+                        Assert.assertSame("Two clients opened their own cassettes on one file.", recorder.getCassette(), other.getCassette());
+                    }
+                    finally {
+                        other.close();
+                    }
+
+                    ValidationResult recorded = recorder.get(url, CHANGES.handler());
+                    Assert.assertTrue("The Movie DB API did not return the expected response. " + recorded, recorded.passed());
+                    Assert.assertEquals(1, recorder.getCassette().getRecordedCount());
+
+                    try {
+                        Cassette.open(file, Cassette.Mode.REPLAY).close();
+                        Assert.fail("The cassette being recorded was opened for replay as well.");
+                    }
+                    catch (IOException ex) {
+                        // Expected: it is already open for recording
+                    }
+                }
+                finally {
+                    recorder.close();
+                }
+
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                Assert.assertEquals("The cassette was not cut back to its last record.", bytes.length, ByteBuffer.wrap(bytes).getLong(8));
+
+                String contents = new String(bytes, StandardCharsets.ISO_8859_1);
+                Assert.assertFalse("The API token was written into the cassette.", contents.contains("api_key"));
+
+                MovieDbClient player = new MovieDbClient(settings.setCassetteMode(Cassette.Mode.REPLAY));
+                try {
+                    ValidationResult replayed = player.get(offlineUrl, CHANGES.handler());
+                    Assert.assertTrue("The replayed response did not pass. " + replayed, replayed.passed());
+                    Assert.assertEquals(1, player.getCassette().getHitCount());
+                }
+                finally {
+                    player.close();
+                }
+            }
+            finally {
+                file.delete();
+            }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in cassetteRecordAndReplay. Err: " + ex.getMessage());
+        }
+
+    }
+
+
+    /**
+     * This sends a request through a rate limiter with no permits left, and checks the total deadline still applies
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Create a client whose rate limiter allows one request a minute, and take that one permit
+     * 3. Execute the request with a total deadline of 300 ms
+     * 4. Check to make sure it failed at its deadline rather than waiting a minute for the next permit
+     *
+     * Expected Results:
+     * The request fails with an InterruptedIOException naming its deadline, well within a second, and leaves its thread uninterrupted
+     */
+    @Test
+    public void rateLimitedDeadline()
+    {
+        try {
+
+            // Generate URL
+            String url = BASEURL + "person/1245/changes" + TOKENPARAM;
+
+            RateLimiter exhausted = new RateLimiter(1, TimeUnit.MINUTES.toMillis(1), 1);
+            exhausted.reserve();
+
+            MovieDbClient client = new MovieDbClient(ClientSettings.fromSystemProperties()
+                    .setRateLimiter(exhausted)
+                    .setCacheEnabled(false)
+                    .setCassetteMode(null)
+                    .setTotalTimeoutMillis(300));
+            long start = System.nanoTime();
+            try {
+                client.get(url, CHANGES.handler());
+                Assert.fail("The request went out without a rate limit permit.");
+            }
+            catch (InterruptedIOException ex) {
+                Assert.assertTrue("The request did not fail at its deadline: " + ex.getMessage(), ex.getMessage().contains("deadline"));
+            }
+            finally {
+                client.close();
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Assert.assertTrue("The request waited " + elapsedMillis + " ms for the rate limiter.", elapsedMillis < 5000);
+            Assert.assertFalse("The deadline left the thread interrupted.", Thread.currentThread().isInterrupted());
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in rateLimitedDeadline. Err: " + ex.getMessage());
+        }
+
+    }
+
+
+    /**
+     * This sends a request to a server that takes the connection but never answers, and checks the client gives up on it
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token, on a local socket nothing ever answers
+     * 2. Execute the request with a total deadline of 300 ms and a long socket timeout
+     * 3. Check to make sure it was aborted at its deadline, well before the socket timeout
+     * 4. Execute the request again with a socket timeout of 300 ms and no total deadline
+     * 5. Check to make sure it timed out waiting for the first byte
+     *
+     * Expected Results:
+     * Neither request hangs: the first fails with an InterruptedIOException naming its deadline, the second with a SocketTimeoutException
+     */
+    @Test
+    public void stalledServerDeadlines()
+    {
+        try (ServerSocket stalled = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+
+            // Generate URL
+            String url = "http://127.0.0.1:" + stalled.getLocalPort() + "/3/person/1245/changes" + TOKENPARAM;
+
+            ClientSettings settings = ClientSettings.fromSystemProperties()
+                    .setRateLimiter(null)
+                    .setCacheEnabled(false)
+                    .setCassetteMode(null);
+
+            MovieDbClient client = new MovieDbClient(settings.setSocketTimeoutMillis(10000).setTotalTimeoutMillis(300));
+            long start = System.nanoTime();
+            try {
+                client.get(url, CHANGES.handler());
+                Assert.fail("The request to a server that never answers did not fail.");
+            }
+            catch (SocketTimeoutException ex) {
+                Assert.fail("The request waited for the socket timeout rather than its deadline.");
+            }
+            catch (InterruptedIOException ex) {
+                Assert.assertTrue("The request did not fail at its deadline: " + ex.getMessage(), ex.getMessage().contains("deadline"));
+            }
+            finally {
+                client.close();
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Assert.assertTrue("The request took " + elapsedMillis + " ms to be aborted.", elapsedMillis < 5000);
+
+            client = new MovieDbClient(settings.setSocketTimeoutMillis(300).setTotalTimeoutMillis(0));
+            try {
+                client.get(url, CHANGES.handler());
+                Assert.fail("The request to a server that never answers did not fail.");
+            }
+            catch (SocketTimeoutException ex) {
+                // Expected: nothing arrived within the socket timeout
+            }
+            finally {
+                client.close();
+            }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in stalledServerDeadlines. Err: " + ex.getMessage());
+        }
+
+    }
+
+
+    /**
+     * This starts async requests that are still waiting for the rate limiter or still on the wire at their deadline, and checks neither goes on past it
+     * Steps:
+     * 1. Start a stand-in server that takes 2 seconds to answer, and build the URL for person 1245 (Scarlett Johansson) on it
+     * 2. Start the request with a total deadline of 300 ms through an async client whose rate limiter has no permit for the next second
+     * 3. Check to make sure it fails at its deadline, wait for the permit to come up, and check the request never reached the server
+     * 4. Start the request with the same deadline through an async client with no rate limiter
+     * 5. Check to make sure it fails at its deadline, and that it is no longer on the wire long before the server answers
+     *
+     * Expected Results:
+     * Both requests fail with a TimeoutException at their deadline; the first is never sent and the second is aborted
+     */
+    @Test
+    public void asyncDeadlineCancelsRequest()
+    {
+        StubMovieDbServer server = new StubMovieDbServer(APITOKEN);
+        try {
+            server.setLatencyMillis(2000);
+            server.start(0);
+
+            // Generate URL
+            String url = server.getBaseUrl() + "person/1245/changes" + TOKENPARAM;
+
+            RateLimiter exhausted = new RateLimiter(1, 1000, 1);
+            exhausted.reserve();
+
+            AsyncMovieDbClient waiting = new AsyncMovieDbClient(ClientSettings.fromSystemProperties()
+                    .setRateLimiter(exhausted)
+                    .setCoalescingEnabled(false)
+                    .setTotalTimeoutMillis(300));
+            try {
+                assertTimesOut(waiting.getAsync(url, CHANGES.handler()));
+
+                // The permit the request was waiting for comes up about a second after it was taken
+                Thread.sleep(1000);
+                Assert.assertEquals("The request was sent after its deadline.", 0, server.getRequestCount());
+            }
+            finally {
+                waiting.close();
+            }
+
+            AsyncMovieDbClient sending = new AsyncMovieDbClient(ClientSettings.fromSystemProperties()
+                    .setRateLimiter(null)
+                    .setCoalescingEnabled(false)
+                    .setTotalTimeoutMillis(300));
+            try {
+                assertTimesOut(sending.getAsync(url, CHANGES.handler()));
+                Assert.assertEquals("The request did not reach the server.", 1, server.getRequestCount());
+
+                for (int i = 0; i < 50 && sending.getInFlight() > 0; i++) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals("The request was left on the wire after its deadline.", 0, sending.getInFlight());
+            }
+            finally {
+                sending.close();
+            }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in asyncDeadlineCancelsRequest. Err: " + ex.getMessage());
+        }
+        finally {
+            server.close();
+        }
+
+    }
+
+    /**
+     * Checks an async request fails with a TimeoutException, as it does at its total deadline.
+     */
+    private static void assertTimesOut(CompletableFuture<?> request) throws InterruptedException
+    {
+        try {
+            request.get(5, TimeUnit.SECONDS);
+            Assert.fail("The request completed although the server was still answering.");
+        }
+        catch (ExecutionException ex) {
+            Assert.assertTrue("The request did not fail at its deadline: " + ex.getCause(), ex.getCause() instanceof TimeoutException);
+        }
+        catch (TimeoutException ex) {
+            Assert.fail("The request ran on past its deadline.");
+        }
+    }
+
+
+    /**
+     * This makes one request stall through a client that hedges slow requests, and checks a second copy answers it
+     * Steps:
+     * 1. Start a stand-in server, and build the URL for person 1245 (Scarlett Johansson) on it
+     * 2. Create a client with hedging turned on, which hedges once an endpoint has 5 latencies
+     * 3. Execute the request 5 times, taking 100 ms over each response, so the client knows how long it usually takes
+     * 4. Have the server stall the next request it receives for 10 seconds, and execute the request once more
+     * 5. Check to make sure a response code of 200 was received with a "changes" key whose entries each have a "key"
+     * 6. Check to make sure one hedge was sent and it won
+     *
+     * Expected Results:
+     * The stalled request is answered by its hedge, which is counted as issued and won
+     */
+    @Test
+    public void hedgedSlowRequest()
+    {
+        StubMovieDbServer server = new StubMovieDbServer(APITOKEN);
+        try {
+            server.start(0);
+
+            // Generate URL
+            String url = server.getBaseUrl() + "person/1245/changes" + TOKENPARAM;
+
+            MovieDbClient client = new MovieDbClient(ClientSettings.fromSystemProperties()
+                    .setRateLimiter(null)
+                    .setHedgingEnabled(true)
+                    .setHedgeMinSamples(5)
+                    .setHedgeMaxShare(0.5)
+                    .setCacheEnabled(false)
+                    .setCassetteMode(null));
+            try {
+
+                // Take 100 ms over each of these, so the hedge goes out well after the first copy has reached the server
+                ResponseHandler<ValidationResult> slow = new ResponseHandler<ValidationResult>() {
+
+                    @Override
+                    public ValidationResult handleResponse(HttpResponse response) throws IOException {
+                        try {
+                            Thread.sleep(100);
+                        }
+                        catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return CHANGES.handler().handleResponse(response);
+                    }
+                };
+                for (int i = 0; i < 5; i++) {
+                    checkLoadResponse(client.get(url, slow));
+                }
+
+                // Only the first copy stalls, so the hedge, the next request the server sees, answers at once
+                server.stallNextRequest(TimeUnit.SECONDS.toMillis(10));
+                long start = System.nanoTime();
+                ValidationResult result = client.get(url, CHANGES.handler());
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                Assert.assertTrue("The Movie DB API did not return the expected response. " + result, result.passed());
+
+                HedgedRequests hedged = client.getHedgedRequests();
+                Assert.assertEquals("The stalled request was not hedged: " + hedged, 1, hedged.getHedgesIssued());
+                Assert.assertEquals("The hedge did not answer the stalled request: " + hedged, 1, hedged.getHedgesWon());
+                Assert.assertTrue("The request waited " + elapsedMillis + " ms for the stalled copy.", elapsedMillis < 5000);
+            }
+            finally {
+                client.close();
             }
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in hedgedSlowRequest. Err: " + ex.getMessage());
+        }
+        finally {
+            server.close();
+        }
+
+    }
+
+
+    /**
+     * This is the same as the basic API test with a valid API token, but also includes empty dates tags, which are optional parameters
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Add empty "start_date" and "end_date" params
+     * 3. Execute the request
+     * 4. Check to make sure a response code of 200 was received
+     * 5. Verifies that the result contains the "changes" key
+     * 6. Checks to make sure every entry in "changes" contains a "key" object in the response
+     *
+     * Expected Results:
+     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     */
+    @Test
+    public void emptyDatesTag()
+    {
+        try {
+
+            String startDateToken = "&start_date=";
+            String endDateToken = "&end_date=";
+
+            // Generate URL
+            ValidationResult response = CLIENT.get(BASEURL + "person/1245/changes" + TOKENPARAM + startDateToken + endDateToken, CHANGES.handler());
+
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in emptyDatesTag. Err: " + ex.getMessage());
+        }
+
+    }
+
+
+    /**
+     * This is the same as the basic API test with a valid API token, but also includes a different language param, which is optional
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Add a language of "es-MX" which is Mexico Spanish
+     * 3. Execute the request
+     * 4. Check to make sure a response code of 200 was received
+     * 5. Verifies that the result contains the "changes" key
+     * 6. Checks to make sure every entry in "changes" contains a "key" object in the response
+     *
+     * Expected Results:
+     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     */
+    @Test
+    public void differentLanguageTest()
+    {
+        try {
+
+            String language = "&language=es-MX";
+
+            // Generate URL
+            ValidationResult response = CLIENT.get(BASEURL + "person/1245/changes" + TOKENPARAM + language, CHANGES.handler());
+
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in differentLanguageTest. Err: " + ex.getMessage());
+        }
+
+    }
+
+
+    /**
+     * This is the same as the basic API test with a valid API token, but also includes an empty language param, which is optional
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Add an empty language parameter
+     * 3. Execute the request
+     * 4. Check to make sure a response code of 200 was received
+     * 5. Verifies that the result contains the "changes" key
+     * 6. Checks to make sure every entry in "changes" contains a "key" object in the response
+     *
+     * Expected Results:
+     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     */
+    @Test
+    public void emptyLanguageTest()
+    {
+        try {
+
+            String language = "&language=";
+
+            // Generate URL
+            ValidationResult response = CLIENT.get(BASEURL + "person/1245/changes" + TOKENPARAM + language, CHANGES.handler());
+
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
+
+        }
+        catch(Exception ex)
+        {
+            Assert.fail("An exception was thrown in emptyLanguageTest. Err: " + ex.getMessage());
+        }
+
+    }
+
+    /**
+     * This is the same as the basic API test with a valid API token, but also includes an invalid language code,
+     * Steps:
+     * 1. Build the URL for person 1245 (Scarlett Johansson) with a valid API Token
+     * 2. Add an invalid language parameter of XX
+     * 3. Execute the request
+     * 4. Check to make sure a response code of 200 was received
+     * 5. Verifies that the result contains the "changes" key
+     * 6. Checks to make sure every entry in "changes" contains a "key" object in the response
+     *
+     * Expected Results:
+     * Server responds with a 200 status key for Success, and that there is a "changes" key in the results.
+     */
+    @Test
+    public void invalidLanguageTest()
+    {
+        try {
+
+            String language = "&language=XX";
+
+            // Generate URL
+            ValidationResult response = CLIENT.get(BASEURL + "person/1245/changes" + TOKENPARAM + language, CHANGES.handler());
+
+            Assert.assertTrue("The Movie DB API did not return the expected response. " + response, response.passed());
+
         }
         catch(Exception ex)
         {
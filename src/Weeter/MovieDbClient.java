@@ -0,0 +1,482 @@
+package Weeter;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.cache.HttpCacheContext;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.execchain.ClientExecChain;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A pooled, keep-alive HTTP client shared by every test in the suite.
+ *
+ * Creating a client per request means every call pays a fresh TCP and TLS handshake, and abandoning the response
+ * leaks the connection. This keeps one connection pool for the whole run, reuses connections for as long as the
+ * server allows, evicts them once they have been idle for a while, and always consumes the response entity so the
+ * connection is returned to the pool. Requests that go over the wire are paced by a {@link RateLimiter}, and a
+ * 429 Too Many Requests is waited out and retried rather than handed back to the caller.
+ *
+ * Responses are asked for gzip or deflate compressed, and decompressed as the caller reads them, so a handler that
+ * parses off the stream never holds the compressed or the decompressed body in full. The body bytes are counted both
+ * as they come off the wire and as they are read, in a {@link TransferStats}.
+ *
+ * With caching turned on, responses are kept in a {@link TieredHttpCacheStorage} and reused or revalidated as their
+ * Cache-Control, ETag and Last-Modified headers allow. The cache sits above the rate limiter, so a response served
+ * from it uses none of the rate budget.
+ *
+ * With a {@link Cassette}, every response from the server is recorded, or every request is answered from an earlier
+ * recording without going to the network at all. It sits between the cache and the rate limiter, so replayed
+ * responses are neither paced nor throttled.
+ *
+ * With coalescing turned on, a GET that is identical to one already in flight waits for that one and shares its
+ * result rather than making a request of its own; see {@link SingleFlight}. It sits above the cache.
+ *
+ * Every request has deadlines: for the connection to be made, for the first byte of the response and each one after
+ * it, and for the whole request, waits for the rate limiter and the handler included. A request past its total
+ * deadline is aborted, which closes its connection, or wakes it if it is still waiting for the rate limiter, and fails
+ * it with an InterruptedIOException, so a stalled server or an exhausted rate budget can hold up a test for no longer
+ * than that. With hedging turned on, a GET that runs longer than usual is sent a
+ * second time and the first answer is taken; see {@link HedgedRequests}.
+ *
+ * As a {@link MovieDbTransport}, each request is run on a thread of its own, so every request in flight holds a
+ * thread for as long as it takes. {@link AsyncMovieDbClient} does not.
+ *
+ * See {@link ClientSettings} for the system properties the shared client is configured from.
+ */
+public class MovieDbClient implements MovieDbTransport {
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile MovieDbClient shared;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final RateLimiter limiter;
+    private final CacheStats cacheStats;
+    private final Cassette cassette;
+    private final SingleFlight singleFlight;
+    private final HedgedRequests hedgedRequests;
+    private final long totalTimeoutMillis;
+    private final ScheduledThreadPoolExecutor deadlines;
+    private final TransferStats transferStats = new TransferStats();
+    private final RequestTimings requestTimings = new RequestTimings();
+    private final ExecutorService requestExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "moviedb-request-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Returns the client shared by the whole suite, creating it from the system properties on first use.
+     */
+    public static MovieDbClient shared()
+    {
+        MovieDbClient result = shared;
+        if (result == null) {
+            synchronized (SHARED_LOCK) {
+                result = shared;
+                if (result == null) {
+                    try {
+                        result = new MovieDbClient(ClientSettings.fromSystemProperties());
+                    }
+                    catch (IOException ex) {
+                        throw new IllegalStateException("Could not create the shared Movie DB client", ex);
+                    }
+                    shared = result;
+
+                    // Make sure a cassette being recorded is flushed however the run ends
+                    final MovieDbClient closing = result;
+                    Runtime.getRuntime().addShutdownHook(new Thread("moviedb-client-shutdown") {
+
+                        @Override
+                        public void run() {
+                            try {
+                                closing.close();
+                            }
+                            catch (IOException ex) {
+                                System.err.println("Could not close the shared Movie DB client: " + ex.getMessage());
+                            }
+                        }
+                    });
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a client with its own connection pool.
+     */
+    public MovieDbClient(ClientSettings settings) throws IOException
+    {
+        this.limiter = settings.getRateLimiter();
+        this.cassette = settings.getCassetteMode() == null ? null : Cassette.open(settings.getCassetteFile(), settings.getCassetteMode());
+        this.totalTimeoutMillis = settings.getTotalTimeoutMillis();
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(settings.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(settings.getMaxPerRoute());
+
+        // Use the server's Keep-Alive timeout when it sends one, otherwise fall back to our own
+        final long keepAliveMillis = TimeUnit.SECONDS.toMillis(settings.getKeepAliveSeconds());
+        ConnectionKeepAliveStrategy keepAlive = new ConnectionKeepAliveStrategy() {
+
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return duration > 0 ? duration : keepAliveMillis;
+            }
+        };
+
+        HttpClientBuilder builder = settings.isCacheEnabled()
+                ? cachingBuilder(settings, cassette, transferStats)
+                : networkBuilder(settings, cassette, transferStats);
+
+        if (!settings.isCompressionEnabled()) {
+            builder.disableContentCompression();
+        }
+
+        RequestConfig timeouts = RequestConfig.custom()
+                .setConnectTimeout(settings.getConnectTimeoutMillis())
+                .setSocketTimeout(settings.getSocketTimeoutMillis())
+                .build();
+
+        client = builder
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(timeouts)
+                .setKeepAliveStrategy(keepAlive)
+                .evictExpiredConnections()
+                .evictIdleConnections(settings.getIdleSeconds(), TimeUnit.SECONDS)
+                .addInterceptorLast(new TransferCountingExec.DecodedBytesInterceptor(transferStats))
+                .build();
+
+        cacheStats = settings.isCacheEnabled() ? new CacheStats() : null;
+        singleFlight = settings.isCoalescingEnabled() ? new SingleFlight() : null;
+        hedgedRequests = settings.isHedgingEnabled()
+                ? new HedgedRequests(settings.getHedgePercentile(), settings.getHedgeMinSamples(), settings.getHedgeMaxShare(), requestExecutor)
+                : null;
+
+        deadlines = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "moviedb-deadline-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Executes the request and hands the response to the handler. The response entity is always consumed and the
+     * connection released, whether or not the handler reads the body. The time it took is added to the
+     * {@link RequestTimings} under the current {@link RequestTag}. If it is still running at its total deadline it
+     * is aborted and fails with an InterruptedIOException.
+     */
+    public <T> T execute(final HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException
+    {
+        long start = System.nanoTime();
+
+        Deadline deadline = null;
+        ScheduledFuture<?> scheduled = null;
+        if (totalTimeoutMillis > 0) {
+            deadline = new Deadline(request, Thread.currentThread());
+            scheduled = deadlines.schedule(deadline, totalTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            if (cacheStats == null) {
+                return client.execute(request, handler);
+            }
+
+            HttpCacheContext context = HttpCacheContext.create();
+            try {
+                return client.execute(request, handler, context);
+            }
+            finally {
+                cacheStats.record(context.getCacheResponseStatus());
+            }
+        }
+        catch (IOException ex) {
+            if (deadline != null && deadline.finish()) {
+                InterruptedIOException timeout = new InterruptedIOException(request.getMethod() + " " + request.getURI()
+                        + " was aborted at its deadline of " + totalTimeoutMillis + " ms");
+                timeout.initCause(ex);
+                throw timeout;
+            }
+            throw ex;
+        }
+        finally {
+            if (deadline != null) {
+                scheduled.cancel(false);
+                deadline.finish();
+            }
+            requestTimings.record(RequestTag.current(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Executes a GET against the given URL and reads the whole response.
+     */
+    public ApiResponse get(String url) throws IOException
+    {
+        return get(url, ApiResponse.HANDLER);
+    }
+
+    /**
+     * Executes a GET against the given URL and hands the response to the handler, which can read the body as a stream.
+     * With coalescing on, the result may be shared with other callers of the same URL and handler, and with hedging
+     * on, the handler may be run on the responses to two copies of the GET.
+     */
+    public <T> T get(final String url, final ResponseHandler<? extends T> handler) throws IOException
+    {
+        if (singleFlight == null) {
+            return send(url, handler);
+        }
+
+        return singleFlight.execute(url, handler, new SingleFlight.Call<T>() {
+
+            @Override
+            public T call() throws IOException {
+                return send(url, handler);
+            }
+        });
+    }
+
+    private <T> T send(String url, final ResponseHandler<? extends T> handler) throws IOException
+    {
+        if (hedgedRequests == null) {
+            return execute(new HttpGet(url), handler);
+        }
+
+        return hedgedRequests.execute(url, new HedgedRequests.Attempt<T>() {
+
+            @Override
+            public T call(HttpGet request) throws IOException {
+                return execute(request, handler);
+            }
+        });
+    }
+
+    /**
+     * Runs the GET on a thread of its own. If it fails the future completes with an UncheckedIOException.
+     */
+    @Override
+    public <T> CompletableFuture<T> getAsync(final String url, final ResponseHandler<? extends T> handler)
+    {
+        return CompletableFuture.supplyAsync(new Supplier<T>() {
+
+            @Override
+            public T get() {
+                try {
+                    return MovieDbClient.this.get(url, handler);
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }, RequestTag.propagate(requestExecutor));
+    }
+
+    /**
+     * Returns the limiter pacing this client, or null when it is not paced.
+     */
+    public RateLimiter getRateLimiter()
+    {
+        return limiter;
+    }
+
+    /**
+     * Returns the cache hit, miss and revalidation counts, or null when caching is off.
+     */
+    public CacheStats getCacheStats()
+    {
+        return cacheStats;
+    }
+
+    /**
+     * Returns the counts of requests made and coalesced, or null when coalescing is off.
+     */
+    public SingleFlight getSingleFlight()
+    {
+        return singleFlight;
+    }
+
+    /**
+     * Returns the counts of GETs hedged and of hedges that won, or null when hedging is off.
+     */
+    public HedgedRequests getHedgedRequests()
+    {
+        return hedgedRequests;
+    }
+
+    /**
+     * Returns the wire and decoded byte counts of the responses, in total, per endpoint and per request tag.
+     */
+    public TransferStats getTransferStats()
+    {
+        return transferStats;
+    }
+
+    /**
+     * Returns the latency of the requests executed, per request tag.
+     */
+    public RequestTimings getRequestTimings()
+    {
+        return requestTimings;
+    }
+
+    /**
+     * Returns the cassette responses are being recorded into or replayed from, or null.
+     */
+    public Cassette getCassette()
+    {
+        return cassette;
+    }
+
+    /**
+     * Returns the current number of leased, pending and available connections in the pool.
+     */
+    public PoolStats getPoolStats()
+    {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        requestExecutor.shutdown();
+        deadlines.shutdownNow();
+        client.close();
+        if (cassette != null) {
+            cassette.close();
+        }
+    }
+
+    private static HttpClientBuilder networkBuilder(final ClientSettings settings, final Cassette cassette, final TransferStats transferStats)
+    {
+        return new HttpClientBuilder() {
+
+            @Override
+            protected ClientExecChain decorateMainExec(ClientExecChain mainExec) {
+                return decorateNetworkExec(mainExec, settings, cassette, transferStats);
+            }
+        };
+    }
+
+    private static HttpClientBuilder cachingBuilder(final ClientSettings settings, final Cassette cassette, final TransferStats transferStats) throws IOException
+    {
+        CacheConfig config = CacheConfig.custom()
+                .setMaxCacheEntries(settings.getCacheMaxEntries())
+                .setMaxObjectSize(settings.getCacheMaxObjectBytes())
+                .setSharedCache(false)
+                .build();
+
+        // The cache wraps whatever is below it, so the rate limiter only sees requests the cache could not answer
+        CachingHttpClientBuilder builder = new CachingHttpClientBuilder() {
+
+            @Override
+            protected ClientExecChain decorateMainExec(ClientExecChain mainExec) {
+                return super.decorateMainExec(decorateNetworkExec(mainExec, settings, cassette, transferStats));
+            }
+        };
+        builder.setCacheConfig(config);
+        builder.setHttpCacheStorage(new TieredHttpCacheStorage(config, settings.getCacheDirectory(), settings.getCacheMaxDiskBytes()));
+
+        return builder;
+    }
+
+    /**
+     * Wraps the exchange with the server in everything that should only apply to requests that really go out.
+     */
+    private static ClientExecChain decorateNetworkExec(ClientExecChain mainExec, ClientSettings settings, Cassette cassette, TransferStats transferStats)
+    {
+        ClientExecChain result = new TransferCountingExec(mainExec, transferStats);
+
+        RateLimiter limiter = settings.getRateLimiter();
+        if (limiter != null) {
+            result = new RateLimitedExec(result, limiter, settings.getMaxRetries());
+        }
+
+        if (cassette != null) {
+            result = new CassetteExec(result, cassette);
+        }
+        return result;
+    }
+
+    /**
+     * Aborts a request at its total deadline, and interrupts the thread running it, which wakes it if it is parked
+     * waiting for the rate limiter or backing off from a 429 rather than on the connection. Once the request has
+     * finished, the deadline does nothing, and the interrupt is never left behind on the thread.
+     */
+    private static class Deadline implements Runnable {
+
+        private final HttpUriRequest request;
+        private final Thread thread;
+        private boolean finished;
+        private boolean expired;
+
+        Deadline(HttpUriRequest request, Thread thread)
+        {
+            this.request = request;
+            this.thread = thread;
+        }
+
+        @Override
+        public synchronized void run()
+        {
+            if (!finished) {
+                expired = true;
+                request.abort();
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Called by the thread running the request once it is done with it. Returns whether the deadline expired,
+         * clearing the interrupt it sent.
+         */
+        synchronized boolean finish()
+        {
+            finished = true;
+            if (expired) {
+                Thread.interrupted();
+            }
+            return expired;
+        }
+    }
+}
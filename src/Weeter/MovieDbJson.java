@@ -0,0 +1,25 @@
+package Weeter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * The one Gson instance used to bind Movie DB API responses.
+ *
+ * Gson is thread-safe once built, so there is no reason to create one per response. The model classes are bound by
+ * the hand-written adapters in {@link PersonChangesAdapters} rather than by reflection.
+ */
+public final class MovieDbJson {
+
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(PersonChanges.class, PersonChangesAdapters.PERSON_CHANGES)
+            .registerTypeAdapter(PersonChange.class, PersonChangesAdapters.PERSON_CHANGE)
+            .registerTypeAdapter(PersonChangeItem.class, PersonChangesAdapters.PERSON_CHANGE_ITEM)
+            .registerTypeAdapter(ChangedPeople.class, PersonChangesAdapters.CHANGED_PEOPLE)
+            .disableHtmlEscaping()
+            .create();
+
+    private MovieDbJson()
+    {
+    }
+}
@@ -0,0 +1,22 @@
+package Weeter;
+
+import org.apache.http.client.ResponseHandler;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Something that can make Movie DB API requests without the caller waiting on them.
+ *
+ * The response is handed to the same {@link ResponseHandler}s whichever transport is used, so the parsing and the
+ * checks on the result do not change when the transport does. {@link MovieDbClient} runs each request on a thread of
+ * its own; {@link AsyncMovieDbClient} keeps any number of requests in flight on a handful of threads.
+ */
+public interface MovieDbTransport extends Closeable {
+
+    /**
+     * Starts a GET against the given URL. The future completes with what the handler made of the response, or
+     * exceptionally if the request or the handler failed.
+     */
+    <T> CompletableFuture<T> getAsync(String url, ResponseHandler<? extends T> handler);
+}
@@ -0,0 +1,78 @@
+package Weeter;
+
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the test methods of a class at the same time instead of one after another.
+ *
+ * Each test is still run on its own instance of the class, and @BeforeClass/@AfterClass still run once around all of
+ * them. Tests against the API spend nearly all their time waiting on a round trip, so running them together brings
+ * the suite's wall-clock time down to roughly that of its slowest test. They all go through the shared
+ * {@link MovieDbClient}, so they share one {@link RateLimiter} budget rather than each racing the API's limit.
+ *
+ * By default every test gets its own thread. Use moviedb.parallel.threads to cap that, or set it to 1 to run the
+ * tests one at a time as before.
+ */
+public class ParallelMethodsRunner extends BlockJUnit4ClassRunner {
+
+    public ParallelMethodsRunner(Class<?> klass) throws InitializationError
+    {
+        super(klass);
+
+        int threads = Integer.getInteger("moviedb.parallel.threads", getChildren().size());
+        if (threads > 1) {
+            setScheduler(new PooledScheduler(threads));
+        }
+    }
+
+    /**
+     * Hands each test to a fixed pool of threads and waits for all of them once they have been scheduled.
+     */
+    private static class PooledScheduler implements RunnerScheduler {
+
+        private final ExecutorService executor;
+
+        PooledScheduler(int threads)
+        {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+
+                    Thread thread = new Thread(runnable, "parallel-test-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        @Override
+        public void schedule(Runnable childStatement)
+        {
+            executor.execute(childStatement);
+        }
+
+        @Override
+        public void finished()
+        {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException ex) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
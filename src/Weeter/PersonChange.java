@@ -0,0 +1,31 @@
+package Weeter;
+
+import java.util.List;
+
+/**
+ * The changes made to one field of a person, such as "biography" or "name".
+ */
+public class PersonChange {
+
+    private final String key;
+    private final List<PersonChangeItem> items;
+
+    public PersonChange(String key, List<PersonChangeItem> items)
+    {
+        this.key = key;
+        this.items = items;
+    }
+
+    /**
+     * The field that was changed, or null if the response did not say.
+     */
+    public String getKey()
+    {
+        return key;
+    }
+
+    public List<PersonChangeItem> getItems()
+    {
+        return items;
+    }
+}
@@ -0,0 +1,74 @@
+package Weeter;
+
+import com.google.gson.JsonElement;
+
+/**
+ * One edit within a person change: what was done, when, and the value before and after.
+ */
+public class PersonChangeItem {
+
+    private final String id;
+    private final String action;
+    private final long time;
+    private final String language;
+    private final JsonElement value;
+    private final JsonElement originalValue;
+
+    public PersonChangeItem(String id, String action, long time, String language, JsonElement value, JsonElement originalValue)
+    {
+        this.id = id;
+        this.action = action;
+        this.time = time;
+        this.language = language;
+        this.value = value;
+        this.originalValue = originalValue;
+    }
+
+    /**
+     * The change item's ID, a 24 character hex string.
+     */
+    public String getId()
+    {
+        return id;
+    }
+
+    /**
+     * What was done, such as "added", "updated" or "deleted".
+     */
+    public String getAction()
+    {
+        return action;
+    }
+
+    /**
+     * When the change was made, in milliseconds since the epoch.
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * The ISO 639-1 code of the language the change applies to, or null.
+     */
+    public String getLanguage()
+    {
+        return language;
+    }
+
+    /**
+     * The new value, or null when the item was deleted.
+     */
+    public JsonElement getValue()
+    {
+        return value;
+    }
+
+    /**
+     * The previous value, or null when the item was added.
+     */
+    public JsonElement getOriginalValue()
+    {
+        return originalValue;
+    }
+}
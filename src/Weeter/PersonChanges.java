@@ -0,0 +1,56 @@
+package Weeter;
+
+import org.apache.http.client.ResponseHandler;
+
+import java.util.List;
+
+/**
+ * The body of a person changes response. A paged response also says which page it is and how many there are.
+ */
+public class PersonChanges {
+
+    /**
+     * Binds a successful response to a PersonChanges straight off the response stream.
+     */
+    public static final ResponseHandler<JsonResponse<PersonChanges>> HANDLER = JsonResponse.handler(PersonChanges.class);
+
+    private final List<PersonChange> changes;
+    private final int page;
+    private final int totalPages;
+
+    public PersonChanges(List<PersonChange> changes)
+    {
+        this(changes, 0, 0);
+    }
+
+    public PersonChanges(List<PersonChange> changes, int page, int totalPages)
+    {
+        this.changes = changes;
+        this.page = page;
+        this.totalPages = totalPages;
+    }
+
+    /**
+     * The changes grouped by field, or null if the response had no "changes" key.
+     */
+    public List<PersonChange> getChanges()
+    {
+        return changes;
+    }
+
+    /**
+     * The page this response holds, starting at 1, or 0 if the response was not paged.
+     */
+    public int getPage()
+    {
+        return page;
+    }
+
+    /**
+     * How many pages there are in all, or 0 if the response was not paged.
+     */
+    public int getTotalPages()
+    {
+        return totalPages;
+    }
+}
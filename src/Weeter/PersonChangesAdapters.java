@@ -0,0 +1,381 @@
+package Weeter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hand-written Gson adapters for the person changes model.
+ *
+ * Going field by field avoids Gson's reflective binding, and lets the change times be read into epoch milliseconds
+ * without a date parser. Unknown fields are skipped so new ones in the API do not break anything.
+ */
+final class PersonChangesAdapters {
+
+    static final TypeAdapter<PersonChangeItem> PERSON_CHANGE_ITEM = new TypeAdapter<PersonChangeItem>() {
+
+        @Override
+        public PersonChangeItem read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String id = null;
+            String action = null;
+            long time = 0;
+            String language = null;
+            JsonElement value = null;
+            JsonElement originalValue = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = nextString(in);
+                        break;
+                    case "action":
+                        action = nextString(in);
+                        break;
+                    case "time":
+                        String text = nextString(in);
+                        time = text == null ? 0 : parseTime(text);
+                        break;
+                    case "iso_639_1":
+                        language = nextString(in);
+                        break;
+                    case "value":
+                        value = jsonElements().read(in);
+                        break;
+                    case "original_value":
+                        originalValue = jsonElements().read(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new PersonChangeItem(id, action, time, language, value, originalValue);
+        }
+
+        @Override
+        public void write(JsonWriter out, PersonChangeItem item) throws IOException {
+
+            if (item == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("id").value(item.getId());
+            out.name("action").value(item.getAction());
+            out.name("time").value(formatTime(item.getTime()));
+            if (item.getLanguage() != null) {
+                out.name("iso_639_1").value(item.getLanguage());
+            }
+            if (item.getOriginalValue() != null) {
+                out.name("original_value");
+                jsonElements().write(out, item.getOriginalValue());
+            }
+            if (item.getValue() != null) {
+                out.name("value");
+                jsonElements().write(out, item.getValue());
+            }
+            out.endObject();
+        }
+    };
+
+    static final TypeAdapter<PersonChange> PERSON_CHANGE = new TypeAdapter<PersonChange>() {
+
+        @Override
+        public PersonChange read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String key = null;
+            List<PersonChangeItem> items = Collections.emptyList();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "key":
+                        key = nextString(in);
+                        break;
+                    case "items":
+                        items = readList(in, PERSON_CHANGE_ITEM);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new PersonChange(key, items);
+        }
+
+        @Override
+        public void write(JsonWriter out, PersonChange change) throws IOException {
+
+            if (change == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("key").value(change.getKey());
+            out.name("items");
+            writeList(out, change.getItems(), PERSON_CHANGE_ITEM);
+            out.endObject();
+        }
+    };
+
+    static final TypeAdapter<PersonChanges> PERSON_CHANGES = new TypeAdapter<PersonChanges>() {
+
+        @Override
+        public PersonChanges read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            List<PersonChange> changes = null;
+            int page = 0;
+            int totalPages = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "changes":
+                        changes = readList(in, PERSON_CHANGE);
+                        break;
+                    case "page":
+                        page = in.nextInt();
+                        break;
+                    case "total_pages":
+                        totalPages = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new PersonChanges(changes, page, totalPages);
+        }
+
+        @Override
+        public void write(JsonWriter out, PersonChanges changes) throws IOException {
+
+            if (changes == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            if (changes.getChanges() != null) {
+                out.name("changes");
+                writeList(out, changes.getChanges(), PERSON_CHANGE);
+            }
+            if (changes.getPage() > 0) {
+                out.name("page").value(changes.getPage());
+                out.name("total_pages").value(changes.getTotalPages());
+            }
+            out.endObject();
+        }
+    };
+
+    static final TypeAdapter<ChangedPeople> CHANGED_PEOPLE = new TypeAdapter<ChangedPeople>() {
+
+        @Override
+        public ChangedPeople read(JsonReader in) throws IOException {
+
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            List<Integer> ids = Collections.emptyList();
+            int page = 0;
+            int totalPages = 0;
+            int totalResults = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "results":
+                        ids = readIds(in);
+                        break;
+                    case "page":
+                        page = in.nextInt();
+                        break;
+                    case "total_pages":
+                        totalPages = in.nextInt();
+                        break;
+                    case "total_results":
+                        totalResults = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return new ChangedPeople(ids, page, totalPages, totalResults);
+        }
+
+        @Override
+        public void write(JsonWriter out, ChangedPeople people) throws IOException {
+
+            if (people == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("results").beginArray();
+            for (int id : people.getIds()) {
+                out.beginObject().name("id").value(id).endObject();
+            }
+            out.endArray();
+            out.name("page").value(people.getPage());
+            out.name("total_pages").value(people.getTotalPages());
+            out.name("total_results").value(people.getTotalResults());
+            out.endObject();
+        }
+    };
+
+    private PersonChangesAdapters()
+    {
+    }
+
+    /**
+     * Reads just the "id" of each entry in a list of changed people.
+     */
+    private static List<Integer> readIds(JsonReader in) throws IOException
+    {
+        List<Integer> result = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("id".equals(in.nextName())) {
+                    result.add(in.nextInt());
+                }
+                else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+        in.endArray();
+
+        return result;
+    }
+
+    /**
+     * Reads a time such as "2017-11-29 19:28:52 UTC" into milliseconds since the epoch. The API always sends UTC.
+     */
+    static long parseTime(String text)
+    {
+        if (text.length() < 19) {
+            throw new JsonSyntaxException("Unexpected change time: " + text);
+        }
+
+        try {
+            long days = LocalDate.of(digits(text, 0, 4), digits(text, 5, 7), digits(text, 8, 10)).toEpochDay();
+            long seconds = days * 86400L + digits(text, 11, 13) * 3600L + digits(text, 14, 16) * 60L + digits(text, 17, 19);
+
+            return seconds * 1000L;
+        }
+        catch (RuntimeException ex) {
+            throw new JsonSyntaxException("Unexpected change time: " + text, ex);
+        }
+    }
+
+    /**
+     * Writes milliseconds since the epoch in the same form the API uses.
+     */
+    static String formatTime(long time)
+    {
+        long seconds = Math.floorDiv(time, 1000L);
+        long days = Math.floorDiv(seconds, 86400L);
+        int secondOfDay = (int) Math.floorMod(seconds, 86400L);
+
+        return String.format("%s %02d:%02d:%02d UTC", LocalDate.ofEpochDay(days),
+                secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+
+    private static int digits(String text, int start, int end)
+    {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Not a digit at " + i);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static String nextString(JsonReader in) throws IOException
+    {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException
+    {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return Collections.emptyList();
+        }
+
+        List<T> result = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            result.add(adapter.read(in));
+        }
+        in.endArray();
+
+        return result;
+    }
+
+    private static <T> void writeList(JsonWriter out, List<T> values, TypeAdapter<T> adapter) throws IOException
+    {
+        out.beginArray();
+        for (T value : values) {
+            adapter.write(out, value);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Gson's adapter for raw JSON values. It is looked up on use rather than kept in a field, since MovieDbJson.GSON
+     * is built from the adapters in this class; Gson caches it, so the lookup is one map read.
+     */
+    private static TypeAdapter<JsonElement> jsonElements()
+    {
+        return MovieDbJson.GSON.getAdapter(JsonElement.class);
+    }
+}
@@ -0,0 +1,285 @@
+package Weeter;
+
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fetches the changes of many people and writes them to disk as it goes.
+ *
+ * At most a fixed number of person changes requests are in flight at once, and no more IDs are taken from the input
+ * than that, so a long or endless ID stream is never read ahead into memory. The requests go through the given
+ * client, which paces them to its rate budget and waits out 429 responses.
+ *
+ * Each person's changes are appended to the output file as one line of JSON ({"id":...,"changes":[...]}), and the ID
+ * is then appended to the checkpoint file. Starting a crawl again with the same files skips every ID in the
+ * checkpoint and carries on with the rest. A crawl cut off mid-write may leave the last person in the output without
+ * a checkpoint entry, in which case it is fetched again, so readers of the output should keep the last line per ID.
+ * People whose request fails are not checkpointed and are tried again on the next crawl.
+ */
+public class PersonChangesCrawler {
+
+    private static final Type CHANGE_LIST = new TypeToken<List<PersonChange>>() {}.getType();
+
+    private final MovieDbClient client;
+    private final String baseUrl;
+    private final String query;
+    private final int concurrency;
+
+    /**
+     * Creates a crawler that asks for baseUrl + "person/{id}/changes" + query, for example with query
+     * "?api_key=...&start_date=...", with at most the given number of requests in flight.
+     */
+    public PersonChangesCrawler(MovieDbClient client, String baseUrl, String query, int concurrency)
+    {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.query = query;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Returns the IDs on every page of the list of changed people at the given URL, such as
+     * baseUrl + "person/changes?api_key=...", fetching each page only once the previous one has been used up.
+     */
+    public static Iterator<Integer> changedPeople(MovieDbClient client, String url)
+    {
+        return new ChangedPeopleIterator(client, url);
+    }
+
+    /**
+     * Crawls the changes of every person in the stream that is not already in the checkpoint, blocking until the
+     * last request has finished and been written. IDs that appear more than once are only fetched once.
+     */
+    public CrawlResult crawl(Iterator<Integer> personIds, File output, File checkpoint) throws IOException, InterruptedException
+    {
+        long start = System.nanoTime();
+
+        Set<Integer> done = readCheckpoint(checkpoint);
+        truncateToLastLine(output);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "crawler-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final Semaphore slots = new Semaphore(concurrency);
+        final LongAdder crawled = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final AtomicReference<String> firstError = new AtomicReference<>();
+        long skipped = 0;
+
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output, true), StandardCharsets.UTF_8));
+        final Writer progress = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(checkpoint, true), StandardCharsets.UTF_8));
+        try {
+
+            Set<Integer> seen = new HashSet<>();
+            try {
+                while (personIds.hasNext()) {
+
+                    final Integer personId = personIds.next();
+                    if (done.contains(personId) || !seen.add(personId)) {
+                        skipped++;
+                        continue;
+                    }
+
+                    slots.acquire();
+                    workers.execute(RequestTag.propagate(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+
+                                JsonResponse<PersonChanges> response = client.get(baseUrl + "person/" + personId + "/changes" + query, PersonChanges.HANDLER);
+
+                                if (response.getBody() == null) {
+                                    throw new IllegalStateException("Person " + personId + " returned status " + response.getStatusCode());
+                                }
+
+                                String line = toLine(personId, response.getBody());
+
+                                // The result is on disk before the checkpoint says so
+                                synchronized (out) {
+                                    out.write(line);
+                                    out.write('\n');
+                                    out.flush();
+                                    progress.write(personId + "\n");
+                                    progress.flush();
+                                }
+                                crawled.increment();
+                            }
+                            catch (Exception ex) {
+                                failed.increment();
+                                firstError.compareAndSet(null, "Person " + personId + ": " + ex);
+                            }
+                            finally {
+                                slots.release();
+                            }
+                        }
+                    }));
+                }
+            }
+            finally {
+                // Let the requests already in flight finish and be written, even when the crawl was interrupted
+                workers.shutdown();
+                slots.acquireUninterruptibly(concurrency);
+            }
+        }
+        finally {
+            out.close();
+            progress.close();
+        }
+
+        return new CrawlResult(crawled.sum(), skipped, failed.sum(), System.nanoTime() - start, firstError.get());
+    }
+
+    private static String toLine(int personId, PersonChanges changes) throws IOException
+    {
+        StringWriter line = new StringWriter();
+        JsonWriter writer = new JsonWriter(line);
+
+        writer.beginObject();
+        writer.name("id").value(personId);
+        writer.name("changes");
+        MovieDbJson.GSON.toJson(changes.getChanges() == null ? Collections.<PersonChange>emptyList() : changes.getChanges(), CHANGE_LIST, writer);
+        writer.endObject();
+        writer.close();
+
+        return line.toString();
+    }
+
+    /**
+     * Reads the IDs in the checkpoint, dropping a last line that was only partly written.
+     */
+    private static Set<Integer> readCheckpoint(File checkpoint) throws IOException
+    {
+        Set<Integer> result = new HashSet<>();
+
+        truncateToLastLine(checkpoint);
+        if (!checkpoint.exists()) {
+            return result;
+        }
+
+        for (String line : Files.readAllLines(checkpoint.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) {
+                result.add(Integer.valueOf(line.trim()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cuts off anything after the last newline, so appending starts on a fresh line after a crawl that was cut short.
+     */
+    private static void truncateToLastLine(File file) throws IOException
+    {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+
+            long end = raf.length();
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+
+            if (end < raf.length()) {
+                raf.setLength(end);
+            }
+        }
+    }
+
+    /**
+     * Walks the pages of the list of changed people one page at a time.
+     */
+    private static class ChangedPeopleIterator implements Iterator<Integer> {
+
+        private final MovieDbClient client;
+        private final String url;
+
+        private Iterator<Integer> current = Collections.emptyIterator();
+        private int page;
+        private int totalPages = 1;
+
+        ChangedPeopleIterator(MovieDbClient client, String url)
+        {
+            this.client = client;
+            this.url = url;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (!current.hasNext()) {
+
+                if (page >= totalPages) {
+                    return false;
+                }
+
+                page++;
+                try {
+
+                    JsonResponse<ChangedPeople> response = client.get(url + (url.indexOf('?') < 0 ? "?" : "&") + "page=" + page, ChangedPeople.HANDLER);
+
+                    if (response.getBody() == null) {
+                        throw new IllegalStateException("Page " + page + " of the changed people returned status " + response.getStatusCode());
+                    }
+
+                    totalPages = response.getBody().getTotalPages();
+                    current = response.getBody().getIds().iterator();
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException("Could not fetch page " + page + " of the changed people", ex);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Integer next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package Weeter;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates person changes payloads shaped like the ones The Movie DB API returns.
+ *
+ * The changes are laid out on a fixed grid (one every six hours by default, offset per person), so the same person
+ * and date window always produce the same payload no matter when it is asked for.
+ */
+public final class PersonChangesFixture {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(6);
+    public static final int CHANGED_PEOPLE_PER_DAY = 50;
+
+    private static final String[] KEYS = {"biography", "name", "also_known_as", "birthday", "place_of_birth", "images"};
+    private static final String[] ACTIONS = {"updated", "added", "deleted"};
+    private static final String[] LANGUAGES = {"en", "es", "fr", "de"};
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss 'UTC'").withZone(ZoneOffset.UTC);
+
+    private PersonChangesFixture()
+    {
+    }
+
+    /**
+     * Builds the payload for every change on the grid between the two times (inclusive), oldest first within a key.
+     */
+    public static String personChanges(int personId, long fromMillis, long toMillis, long intervalMillis)
+    {
+        long first = firstTime(personId, fromMillis, intervalMillis);
+
+        // Group the items by key the same way the API does
+        StringBuilder[] items = new StringBuilder[KEYS.length];
+        for (long time = first; time <= toMillis; time += intervalMillis) {
+
+            long slot = Math.floorDiv(time, intervalMillis);
+            int keyIndex = (int) Math.floorMod(slot + personId, (long) KEYS.length);
+
+            if (items[keyIndex] == null) {
+                items[keyIndex] = new StringBuilder();
+            }
+            else {
+                items[keyIndex].append(',');
+            }
+            appendItem(items[keyIndex], personId, slot, time);
+        }
+
+        StringBuilder result = new StringBuilder("{\"changes\":[");
+        boolean firstKey = true;
+        for (int i = 0; i < KEYS.length; i++) {
+            if (items[i] == null) {
+                continue;
+            }
+            if (!firstKey) {
+                result.append(',');
+            }
+            firstKey = false;
+            result.append("{\"key\":\"").append(KEYS[i]).append("\",\"items\":[").append(items[i]).append("]}");
+        }
+        return result.append("]}").toString();
+    }
+
+    /**
+     * Builds one page of the payload: up to pageSize of the changes between the two times, with "page" and
+     * "total_pages" added the way the API's paged responses carry them. A page past the last one has no changes.
+     */
+    public static String personChangesPage(int personId, long fromMillis, long toMillis, long intervalMillis, int page, int pageSize)
+    {
+        long first = firstTime(personId, fromMillis, intervalMillis);
+        long count = toMillis < first ? 0 : (toMillis - first) / intervalMillis + 1;
+        long totalPages = Math.max(1, (count + pageSize - 1) / pageSize);
+
+        long pageFrom = first + (page - 1L) * pageSize * intervalMillis;
+        long pageTo = Math.min(toMillis, pageFrom + (pageSize - 1L) * intervalMillis);
+
+        String changes = personChanges(personId, pageFrom, pageTo, intervalMillis);
+        return changes.substring(0, changes.length() - 1) + ",\"page\":" + page + ",\"total_pages\":" + totalPages + "}";
+    }
+
+    /**
+     * Builds a payload holding roughly the given number of change items, ending now. Handy for sizing benchmarks.
+     */
+    public static String personChanges(int personId, int itemCount)
+    {
+        long now = System.currentTimeMillis();
+        return personChanges(personId, now - (itemCount - 1) * DEFAULT_INTERVAL_MILLIS, now, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Builds one page of the list of people changed between the two times, shaped like the API's /person/changes
+     * response. A fixed number of people change on each UTC day, so the list only depends on the days asked for.
+     */
+    public static String changedPeoplePage(long fromMillis, long toMillis, int page, int pageSize)
+    {
+        long firstDay = Math.floorDiv(fromMillis, TimeUnit.DAYS.toMillis(1));
+        long lastDay = Math.floorDiv(toMillis, TimeUnit.DAYS.toMillis(1));
+        long total = Math.max(0, lastDay - firstDay + 1) * CHANGED_PEOPLE_PER_DAY;
+
+        StringBuilder result = new StringBuilder("{\"results\":[");
+        for (long index = (page - 1L) * pageSize; index < Math.min(total, (long) page * pageSize); index++) {
+
+            long day = firstDay + index / CHANGED_PEOPLE_PER_DAY;
+            long id = 1 + Math.floorMod(day * 7919L + (index % CHANGED_PEOPLE_PER_DAY) * 104729L, 2000000L);
+
+            if (result.charAt(result.length() - 1) != '[') {
+                result.append(',');
+            }
+            result.append("{\"id\":").append(id).append(",\"adult\":false}");
+        }
+
+        long totalPages = Math.max(1, (total + pageSize - 1) / pageSize);
+        return result.append("],\"page\":").append(page).append(",\"total_pages\":").append(totalPages)
+                .append(",\"total_results\":").append(total).append('}').toString();
+    }
+
+    /**
+     * Returns the first time on the person's grid at or after the given time.
+     */
+    private static long firstTime(int personId, long fromMillis, long intervalMillis)
+    {
+        long offset = Math.floorMod(personId * 7919L * 60000L, intervalMillis);
+        return Math.floorDiv(fromMillis - offset + intervalMillis - 1, intervalMillis) * intervalMillis + offset;
+    }
+
+    private static void appendItem(StringBuilder out, int personId, long slot, long time)
+    {
+        String action = ACTIONS[(int) Math.floorMod(slot, (long) ACTIONS.length)];
+
+        out.append("{\"id\":\"").append(String.format("%08x%016x", personId, slot)).append('"');
+        out.append(",\"action\":\"").append(action).append('"');
+        out.append(",\"time\":\"").append(TIME_FORMAT.format(Instant.ofEpochMilli(time))).append('"');
+        out.append(",\"iso_639_1\":\"").append(LANGUAGES[(int) Math.floorMod(slot, (long) LANGUAGES.length)]).append('"');
+
+        if (!"added".equals(action)) {
+            out.append(",\"original_value\":\"Revision ").append(slot - 1).append(" for person ").append(personId).append('"');
+        }
+        if (!"deleted".equals(action)) {
+            out.append(",\"value\":\"Revision ").append(slot).append(" for person ").append(personId).append('"');
+        }
+        out.append('}');
+    }
+}
@@ -0,0 +1,239 @@
+package Weeter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fetches a person's changes over a date range of any length.
+ *
+ * The API answers at most 14 days per request, so the range is cut into 14 day windows and the windows are fetched
+ * in parallel on a fork/join pool: the range is split in half until each half is a single window, and every window
+ * is fetched under {@link ForkJoinPool#managedBlock}, so the pool adds threads rather than sitting idle while
+ * requests wait on the network. A year of history then takes about as long as its slowest window, give or take the
+ * client's rate budget.
+ *
+ * The windows are merged into one {@link PersonChanges} with a single change per key. An item that comes back in
+ * more than one window is kept once, going by its ID, and each key's items are in time order. Items without an ID
+ * are all kept.
+ */
+public class PersonChangesHistory {
+
+    /**
+     * The longest range, in days and counting both ends, the API accepts in one request.
+     */
+    public static final int MAX_WINDOW_DAYS = 14;
+
+    private static final Comparator<PersonChangeItem> BY_TIME = new Comparator<PersonChangeItem>() {
+
+        @Override
+        public int compare(PersonChangeItem a, PersonChangeItem b) {
+            return Long.compare(a.getTime(), b.getTime());
+        }
+    };
+
+    private final MovieDbClient client;
+    private final String baseUrl;
+    private final String query;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a fetcher that runs on the common fork/join pool.
+     */
+    public PersonChangesHistory(MovieDbClient client, String baseUrl, String query)
+    {
+        this(client, baseUrl, query, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a fetcher that asks for baseUrl + "person/{id}/changes" + query with the dates of each window added,
+     * so the query must already hold the api_key.
+     */
+    public PersonChangesHistory(MovieDbClient client, String baseUrl, String query, ForkJoinPool pool)
+    {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.query = query;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns every change to the person from the start date to the end date, both included.
+     */
+    public PersonChanges fetch(int personId, LocalDate startDate, LocalDate endDate) throws IOException
+    {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("The end date " + endDate + " is before the start date " + startDate);
+        }
+
+        List<PersonChange> windows;
+        try {
+            windows = pool.invoke(new WindowTask(personId, startDate, windowCount(startDate, endDate), endDate, RequestTag.current()));
+        }
+        catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return new PersonChanges(merge(windows));
+    }
+
+    /**
+     * How many requests a range needs.
+     */
+    public static int windowCount(LocalDate startDate, LocalDate endDate)
+    {
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        return (int) ((days + MAX_WINDOW_DAYS - 1) / MAX_WINDOW_DAYS);
+    }
+
+    /**
+     * Groups the changes of every window by key, dropping repeated items and putting each key's items in time order.
+     */
+    private static List<PersonChange> merge(List<PersonChange> windows)
+    {
+        Map<String, List<PersonChangeItem>> byKey = new LinkedHashMap<>();
+        Map<String, Set<String>> idsByKey = new HashMap<>();
+
+        for (PersonChange change : windows) {
+
+            List<PersonChangeItem> items = byKey.get(change.getKey());
+            Set<String> ids = idsByKey.get(change.getKey());
+            if (items == null) {
+                items = new ArrayList<>();
+                ids = new HashSet<>();
+                byKey.put(change.getKey(), items);
+                idsByKey.put(change.getKey(), ids);
+            }
+
+            for (PersonChangeItem item : change.getItems()) {
+                // An item without an ID cannot be told apart from any other, so it is always kept
+                if (item.getId() == null || ids.add(item.getId())) {
+                    items.add(item);
+                }
+            }
+        }
+
+        List<PersonChange> result = new ArrayList<>(byKey.size());
+        for (Map.Entry<String, List<PersonChangeItem>> entry : byKey.entrySet()) {
+
+            List<PersonChangeItem> items = entry.getValue();
+            Collections.sort(items, BY_TIME);
+            result.add(new PersonChange(entry.getKey(), items));
+        }
+        return result;
+    }
+
+    /**
+     * Fetches a run of consecutive windows, splitting it in two until only one window is left. The changes of every
+     * window are returned as they came, one after the other in date order.
+     */
+    private class WindowTask extends RecursiveTask<List<PersonChange>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int personId;
+        private final LocalDate startDate;
+        private final int windows;
+        private final LocalDate endDate;
+        private final String tag;
+
+        WindowTask(int personId, LocalDate startDate, int windows, LocalDate endDate, String tag)
+        {
+            this.personId = personId;
+            this.startDate = startDate;
+            this.windows = windows;
+            this.endDate = endDate;
+            this.tag = tag;
+        }
+
+        @Override
+        protected List<PersonChange> compute() {
+
+            if (windows > 1) {
+
+                int half = windows / 2;
+                LocalDate split = startDate.plusDays((long) half * MAX_WINDOW_DAYS);
+
+                WindowTask first = new WindowTask(personId, startDate, half, split.minusDays(1), tag);
+                WindowTask second = new WindowTask(personId, split, windows - half, endDate, tag);
+
+                first.fork();
+                List<PersonChange> result = new ArrayList<>(second.compute());
+                result.addAll(0, first.join());
+                return result;
+            }
+
+            String url = baseUrl + "person/" + personId + "/changes" + query + "&start_date=" + startDate + "&end_date=" + endDate;
+            WindowFetch fetch = new WindowFetch(url, tag);
+            try {
+                ForkJoinPool.managedBlock(fetch);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted while fetching changes from " + startDate + " to " + endDate));
+            }
+
+            if (fetch.failure != null) {
+                throw new UncheckedIOException("Could not fetch changes from " + startDate + " to " + endDate, fetch.failure);
+            }
+            if (fetch.response.getBody() == null) {
+                throw new IllegalStateException("Changes from " + startDate + " to " + endDate + " returned status " + fetch.response.getStatusCode());
+            }
+
+            Collection<PersonChange> changes = fetch.response.getBody().getChanges();
+            return changes == null ? Collections.<PersonChange>emptyList() : new ArrayList<>(changes);
+        }
+    }
+
+    /**
+     * One window's request, run so that the pool knows the thread is blocked on it.
+     */
+    private class WindowFetch implements ForkJoinPool.ManagedBlocker {
+
+        private final String url;
+        private final String tag;
+        private JsonResponse<PersonChanges> response;
+        private IOException failure;
+
+        WindowFetch(String url, String tag)
+        {
+            this.url = url;
+            this.tag = tag;
+        }
+
+        @Override
+        public boolean block() {
+
+            // The pool's threads are shared, so the tag of the caller is only put on for the request
+            String previous = RequestTag.set(tag);
+            try {
+                response = client.get(url, PersonChanges.HANDLER);
+            }
+            catch (IOException ex) {
+                failure = ex;
+            }
+            finally {
+                RequestTag.restore(previous);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return response != null || failure != null;
+        }
+    }
+}
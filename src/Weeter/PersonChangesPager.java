@@ -0,0 +1,213 @@
+package Weeter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks every page of a person changes query, one change at a time.
+ *
+ * Pages are only fetched as they are needed, so a caller that stops early never pays for the pages it did not reach
+ * and only one or two pages are held in memory at a time. As soon as a page arrives the next one is asked for in the
+ * background, so the round trip for page N+1 overlaps with the caller working through page N. Closing the pager
+ * drops the page being fetched ahead.
+ *
+ * A response without "total_pages" is treated as the only page. The URL is given without a page parameter; the
+ * pager adds one to every request. A page that does not come back with a success status ends the walk with an
+ * IllegalStateException, and a failed request with an UncheckedIOException.
+ */
+public class PersonChangesPager implements Iterator<PersonChange>, Closeable {
+
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            Thread thread = new Thread(runnable, "changes-prefetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final MovieDbClient client;
+    private final String url;
+    private final Executor executor;
+
+    private Iterator<PersonChange> current = Collections.emptyIterator();
+    private CompletableFuture<PersonChanges> prefetch;
+    private int page;
+    private int totalPages = 1;
+    private int pagesFetched;
+    private boolean closed;
+
+    /**
+     * Creates a pager that fetches the pages ahead on a shared pool of daemon threads.
+     */
+    public PersonChangesPager(MovieDbClient client, String url)
+    {
+        this(client, url, PREFETCH_EXECUTOR);
+    }
+
+    /**
+     * Creates a pager that fetches the pages ahead on the given executor, with the current thread's {@link RequestTag}.
+     */
+    public PersonChangesPager(MovieDbClient client, String url, Executor executor)
+    {
+        this.client = client;
+        this.url = url;
+        this.executor = RequestTag.propagate(executor);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (!current.hasNext()) {
+
+            if (closed || page >= totalPages) {
+                return false;
+            }
+
+            PersonChanges next = prefetch == null ? fetch(page + 1) : await(prefetch);
+            prefetch = null;
+            pagesFetched++;
+
+            page++;
+            totalPages = next.getTotalPages() > 0 ? next.getTotalPages() : page;
+
+            // Start on the next page before handing this one over, so the wait for it overlaps with the caller's work
+            if (page < totalPages) {
+                prefetch = prefetch(page + 1);
+            }
+
+            current = next.getChanges() == null ? Collections.<PersonChange>emptyIterator() : next.getChanges().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public PersonChange next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * Returns the changes as a sequential stream. Closing the stream closes the pager.
+     */
+    public Stream<PersonChange> stream()
+    {
+        Stream<PersonChange> stream = StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+
+        return stream.onClose(new Runnable() {
+
+            @Override
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    /**
+     * The page the changes are currently coming from, or 0 before the first one has been fetched.
+     */
+    public int getPage()
+    {
+        return page;
+    }
+
+    /**
+     * How many pages there are in all, as far as the pages fetched so far say.
+     */
+    public int getTotalPages()
+    {
+        return totalPages;
+    }
+
+    /**
+     * How many pages have been handed over to the caller, not counting one still being fetched ahead.
+     */
+    public int getPagesFetched()
+    {
+        return pagesFetched;
+    }
+
+    /**
+     * Stops the walk. A page still being fetched ahead is dropped once it arrives.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        current = Collections.emptyIterator();
+
+        if (prefetch != null) {
+            prefetch.cancel(false);
+            prefetch = null;
+        }
+    }
+
+    private CompletableFuture<PersonChanges> prefetch(final int number)
+    {
+        return CompletableFuture.supplyAsync(new Supplier<PersonChanges>() {
+
+            @Override
+            public PersonChanges get() {
+                return fetch(number);
+            }
+        }, executor);
+    }
+
+    private PersonChanges fetch(int number)
+    {
+        try {
+
+            JsonResponse<PersonChanges> response = client.get(pageUrl(number), PersonChanges.HANDLER);
+
+            if (response.getBody() == null) {
+                throw new IllegalStateException("Page " + number + " of the person changes returned status " + response.getStatusCode());
+            }
+            return response.getBody();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException("Could not fetch page " + number + " of the person changes", ex);
+        }
+    }
+
+    private String pageUrl(int number)
+    {
+        return url + (url.indexOf('?') < 0 ? "?" : "&") + "page=" + number;
+    }
+
+    private static PersonChanges await(CompletableFuture<PersonChanges> future)
+    {
+        try {
+            return future.join();
+        }
+        catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package Weeter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps people's changes up to date by fetching only what is new since the last sync.
+ *
+ * A person who has never been synced has their last few days fetched. After that, each sync asks for the changes
+ * from the date of the previous sync to today, usually one short request, and keeps only the items past the
+ * person's {@link HighWaterMarks.Mark}: newer than the newest item seen before, or as new but not seen. Syncing again
+ * with nothing changed returns nothing, and the items from the day of the last sync, which the API sends again, are
+ * never returned twice. The marks are written to their file at the end of {@link #syncAll}, which only moves a
+ * person's mark on once their items are in the store; a person whose items could not be stored keeps their old
+ * mark, so the same items are fetched again on the next sync.
+ *
+ * The API only takes whole dates, so the day of the last sync is always fetched again; only the items after the
+ * mark are new. An item that turns up later with a time before the mark is not picked up.
+ */
+public class PersonChangesSync {
+
+    private final PersonChangesHistory history;
+    private final HighWaterMarks marks;
+    private final int initialDays;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder fetchedItems = new LongAdder();
+    private final LongAdder newItems = new LongAdder();
+
+    /**
+     * Creates a sync that fetches through the history and keeps its marks in the given store. People without a mark
+     * have the last initialDays days, today included, fetched.
+     */
+    public PersonChangesSync(PersonChangesHistory history, HighWaterMarks marks, int initialDays)
+    {
+        if (initialDays <= 0) {
+            throw new IllegalArgumentException("At least one day has to be fetched for a person without a mark");
+        }
+
+        this.history = history;
+        this.marks = marks;
+        this.initialDays = initialDays;
+    }
+
+    /**
+     * Fetches the person's changes since their mark and returns only the items past it, moving the mark on in
+     * memory. Today is the last date to fetch, in UTC.
+     */
+    public PersonChanges sync(int personId, LocalDate today) throws IOException
+    {
+        Update update = fetch(personId, today);
+        commit(personId, update);
+        return update.changes;
+    }
+
+    /**
+     * Syncs every person, adds the new items to the store, and saves the marks once all of them are done. Returns
+     * how many items were added. A person's mark only moves on once their items have been added, and if a person
+     * fails, the marks of the people before them are still saved.
+     */
+    public int syncAll(Iterable<Integer> personIds, LocalDate today, ChangeStore store) throws IOException
+    {
+        int added = 0;
+        try {
+            for (Integer personId : personIds) {
+                Update update = fetch(personId, today);
+                added += store.add(personId, update.changes);
+                commit(personId, update);
+            }
+        }
+        catch (IOException | RuntimeException ex) {
+            // Still save the marks that did move, without hiding why the sync stopped
+            try {
+                marks.save();
+            }
+            catch (IOException saveEx) {
+                ex.addSuppressed(saveEx);
+            }
+            throw ex;
+        }
+
+        marks.save();
+        return added;
+    }
+
+    /**
+     * Fetches the person's changes since their mark, and works out the items past it and where the mark goes next,
+     * without moving it.
+     */
+    private Update fetch(int personId, LocalDate today) throws IOException
+    {
+        HighWaterMarks.Mark mark = marks.get(personId);
+
+        LocalDate startDate = mark == null ? today.minusDays(initialDays - 1) : mark.getSyncedDate();
+        if (startDate.isAfter(today)) {
+            startDate = today;
+        }
+
+        PersonChanges fetched = history.fetch(personId, startDate, today);
+        requests.add(PersonChangesHistory.windowCount(startDate, today));
+
+        long lastChangeTime = mark == null ? Long.MIN_VALUE : mark.getLastChangeTime();
+        Set<String> idsAtLastChange = mark == null ? new LinkedHashSet<String>() : new LinkedHashSet<>(mark.getIdsAtLastChange());
+
+        List<PersonChange> result = new ArrayList<>();
+        int taken = 0;
+        for (PersonChange change : fetched.getChanges()) {
+
+            List<PersonChangeItem> items = new ArrayList<>();
+            for (PersonChangeItem item : change.getItems()) {
+
+                fetchedItems.increment();
+                if (mark != null && !mark.isNew(item)) {
+                    continue;
+                }
+
+                items.add(item);
+                if (item.getTime() > lastChangeTime) {
+                    lastChangeTime = item.getTime();
+                    idsAtLastChange.clear();
+                }
+                if (item.getTime() == lastChangeTime) {
+                    idsAtLastChange.add(item.getId());
+                }
+            }
+
+            if (!items.isEmpty()) {
+                result.add(new PersonChange(change.getKey(), items));
+                taken += items.size();
+            }
+        }
+
+        return new Update(new PersonChanges(result), taken, new HighWaterMarks.Mark(today, lastChangeTime, idsAtLastChange));
+    }
+
+    private void commit(int personId, Update update)
+    {
+        marks.put(personId, update.mark);
+        newItems.add(update.taken);
+    }
+
+    /**
+     * How many requests the syncs have made.
+     */
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    /**
+     * How many change items the API returned, new or not.
+     */
+    public long getFetchedItems()
+    {
+        return fetchedItems.sum();
+    }
+
+    /**
+     * How many of them were past their person's mark.
+     */
+    public long getNewItems()
+    {
+        return newItems.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d requests, %d items fetched, %d new", getRequests(), getFetchedItems(), getNewItems());
+    }
+
+    /**
+     * The new items of one person's sync, and the mark to move on to once they have been taken.
+     */
+    private static class Update {
+
+        private final PersonChanges changes;
+        private final int taken;
+        private final HighWaterMarks.Mark mark;
+
+        Update(PersonChanges changes, int taken, HighWaterMarks.Mark mark)
+        {
+            this.changes = changes;
+            this.taken = taken;
+            this.mark = mark;
+        }
+    }
+}
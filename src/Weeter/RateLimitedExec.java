@@ -0,0 +1,91 @@
+package Weeter;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.execchain.ClientExecChain;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits directly above the client's network exchange, takes a permit from the rate limiter before every request that
+ * actually goes over the wire, and waits out a 429 Too Many Requests before trying again.
+ */
+class RateLimitedExec implements ClientExecChain {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ClientExecChain requestExecutor;
+    private final RateLimiter limiter;
+    private final int maxRetries;
+
+    RateLimitedExec(ClientExecChain requestExecutor, RateLimiter limiter, int maxRetries)
+    {
+        this.requestExecutor = requestExecutor;
+        this.limiter = limiter;
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRoute route, HttpRequestWrapper request, HttpClientContext context,
+                                         HttpExecutionAware execAware) throws IOException, HttpException
+    {
+        for (int attempt = 0; ; attempt++) {
+
+            try {
+                limiter.acquire();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(ex.getMessage());
+            }
+
+            CloseableHttpResponse response = requestExecutor.execute(route, request, context, execAware);
+
+            // Only requests without a body can be sent again as they are
+            if (response.getStatusLine().getStatusCode() != TOO_MANY_REQUESTS
+                    || attempt >= maxRetries
+                    || request.getOriginal() instanceof HttpEntityEnclosingRequest) {
+                return response;
+            }
+
+            Header retryAfter = response.getFirstHeader("Retry-After");
+            limiter.backOff(retryAfterNanos(retryAfter == null ? null : retryAfter.getValue(), attempt));
+
+            EntityUtils.consume(response.getEntity());
+            response.close();
+        }
+    }
+
+    /**
+     * Reads a Retry-After header value, which is either a number of seconds or a date. Without one, backs off
+     * exponentially from one second.
+     */
+    static long retryAfterNanos(String retryAfter, int attempt)
+    {
+        if (retryAfter != null) {
+
+            String value = retryAfter.trim();
+            try {
+                return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+            }
+            catch (NumberFormatException ex) {
+                Date date = DateUtils.parseDate(value);
+                if (date != null) {
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(0, date.getTime() - System.currentTimeMillis()));
+                }
+            }
+        }
+        return TimeUnit.SECONDS.toNanos(1L << Math.min(attempt, 5));
+    }
+}
@@ -0,0 +1,151 @@
+package Weeter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free token bucket that keeps requests to The Movie DB API within its rate budget.
+ *
+ * The bucket is kept as a single "next free time" (the generic cell rate algorithm), so taking a permit is one
+ * compare-and-set. Callers that arrive faster than the budget allows are handed a place in line and parked until it
+ * comes up instead of being failed, and a 429 from the server pushes the next free time out by its Retry-After.
+ *
+ * The shared limiter is configured with the following system properties:
+ * moviedb.rate.permits - how many requests may be made per window, 0 to turn pacing off (default 40)
+ * moviedb.rate.windowMillis - the length of the window (default 10000)
+ * moviedb.rate.burst - how many of those requests may go out back to back (default a quarter of the permits)
+ */
+public class RateLimiter {
+
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile RateLimiter shared;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong nextFree;
+
+    private final LongAdder permits = new LongAdder();
+    private final LongAdder parkedNanos = new LongAdder();
+    private final LongAdder backOffs = new LongAdder();
+
+    /**
+     * Returns the limiter shared by every client in this JVM, or null when pacing has been turned off.
+     */
+    public static RateLimiter shared()
+    {
+        RateLimiter result = shared;
+        if (result == null) {
+            synchronized (SHARED_LOCK) {
+                result = shared;
+                if (result == null) {
+
+                    int permits = Integer.getInteger("moviedb.rate.permits", 40);
+                    if (permits <= 0) {
+                        return null;
+                    }
+
+                    result = new RateLimiter(permits,
+                            Long.getLong("moviedb.rate.windowMillis", 10000),
+                            Integer.getInteger("moviedb.rate.burst", Math.max(1, permits / 4)));
+                    shared = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a limiter that lets through at most the given number of permits in any one window, of which up to
+     * burst may be taken back to back.
+     */
+    public RateLimiter(int permitsPerWindow, long windowMillis, int burst)
+    {
+        if (permitsPerWindow <= 0 || windowMillis <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Permits, window and burst must all be positive");
+        }
+
+        int sustained = Math.max(1, permitsPerWindow - burst);
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis) / sustained;
+        toleranceNanos = intervalNanos * (Math.min(burst, permitsPerWindow) - 1);
+        nextFree = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a permit without waiting and returns how many nanoseconds the caller has to hold off before using it.
+     * This is for callers that would rather schedule the work than park a thread.
+     */
+    public long reserve()
+    {
+        while (true) {
+
+            long now = System.nanoTime();
+            long current = nextFree.get();
+            long start = current - now > 0 ? current : now;
+
+            if (nextFree.compareAndSet(current, start + intervalNanos)) {
+                permits.increment();
+
+                long wait = start - toleranceNanos - now;
+                return wait > 0 ? wait : 0;
+            }
+        }
+    }
+
+    /**
+     * Takes a permit, parking the calling thread until it is due.
+     */
+    public void acquire() throws InterruptedException
+    {
+        long wait = reserve();
+        if (wait <= 0) {
+            return;
+        }
+
+        parkedNanos.add(wait);
+
+        long deadline = System.nanoTime() + wait;
+        while (wait > 0) {
+
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while waiting for a rate limit permit");
+            }
+            wait = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Holds every caller back for at least the given time, then lets them through one interval apart. Called when
+     * the server answers with a 429.
+     */
+    public void backOff(long delayNanos)
+    {
+        backOffs.increment();
+
+        long target = System.nanoTime() + delayNanos + toleranceNanos;
+        while (true) {
+
+            long current = nextFree.get();
+            if (current - target >= 0 || nextFree.compareAndSet(current, target)) {
+                return;
+            }
+        }
+    }
+
+    public long getPermitCount()
+    {
+        return permits.sum();
+    }
+
+    public long getParkedNanos()
+    {
+        return parkedNanos.sum();
+    }
+
+    public long getBackOffCount()
+    {
+        return backOffs.sum();
+    }
+}
@@ -0,0 +1,45 @@
+package Weeter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A response held in a {@link Cassette}. The body is a read-only view of the cassette's mapped file.
+ */
+public class RecordedResponse {
+
+    private final int statusCode;
+    private final String reasonPhrase;
+    private final String[] headers;
+    private final ByteBuffer body;
+
+    public RecordedResponse(int statusCode, String reasonPhrase, String[] headers, ByteBuffer body)
+    {
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    public String getReasonPhrase()
+    {
+        return reasonPhrase;
+    }
+
+    /**
+     * The response headers as alternating names and values.
+     */
+    public String[] getHeaders()
+    {
+        return headers;
+    }
+
+    public ByteBuffer getBody()
+    {
+        return body.duplicate();
+    }
+}
@@ -0,0 +1,96 @@
+package Weeter;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A label for the requests made on the current thread, such as the name of the test making them, so that what the
+ * client counts can be broken down by it.
+ *
+ * The tag belongs to the thread that set it. Work handed to other threads carries it along when it is wrapped with
+ * {@link #propagate(Runnable)} or run on an executor wrapped with {@link #propagate(Executor)}.
+ */
+public final class RequestTag {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private RequestTag()
+    {
+    }
+
+    /**
+     * The tag of the current thread, or null if it has none.
+     */
+    public static String current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Tags the current thread and returns its previous tag, to be put back with {@link #restore(String)}.
+     */
+    public static String set(String tag)
+    {
+        String previous = CURRENT.get();
+        CURRENT.set(tag);
+        return previous;
+    }
+
+    /**
+     * Puts back a tag returned by {@link #set(String)}. Null clears it.
+     */
+    public static void restore(String previous)
+    {
+        if (previous == null) {
+            CURRENT.remove();
+        }
+        else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Returns a task that runs with the tag the current thread has now, whichever thread it ends up on.
+     */
+    public static Runnable propagate(Runnable task)
+    {
+        String tag = CURRENT.get();
+        return tag == null ? task : withTag(tag, task);
+    }
+
+    /**
+     * Returns an executor that runs every task with the tag the current thread has now.
+     */
+    public static Executor propagate(final Executor executor)
+    {
+        final String tag = CURRENT.get();
+        if (tag == null) {
+            return executor;
+        }
+
+        return new Executor() {
+
+            @Override
+            public void execute(Runnable task) {
+                executor.execute(withTag(tag, task));
+            }
+        };
+    }
+
+    private static Runnable withTag(final String tag, final Runnable task)
+    {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+
+                String previous = set(tag);
+                try {
+                    task.run();
+                }
+                finally {
+                    restore(previous);
+                }
+            }
+        };
+    }
+}
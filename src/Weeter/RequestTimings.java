@@ -0,0 +1,66 @@
+package Weeter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latency of every request a client executes, per {@link RequestTag}.
+ *
+ * A request is timed from when it is handed to the client until its handler has returned, so responses from the
+ * cache or a cassette are counted along with those from the network, and a request that waited for the rate limiter
+ * includes the wait.
+ *
+ * Every client also adds its requests to {@link #allClients()}, so requests made through a client a test built for
+ * itself are counted along with those made through the shared ones.
+ */
+public class RequestTimings {
+
+    private static final String UNTAGGED = "(untagged)";
+    private static final RequestTimings ALL_CLIENTS = new RequestTimings();
+
+    private final ConcurrentHashMap<String, LatencyHistogram> byTag = new ConcurrentHashMap<>();
+
+    void record(String tag, long nanos)
+    {
+        String key = tag == null ? UNTAGGED : tag;
+
+        LatencyHistogram histogram = byTag.get(key);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = byTag.putIfAbsent(key, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.record(nanos);
+
+        if (this != ALL_CLIENTS) {
+            ALL_CLIENTS.record(tag, nanos);
+        }
+    }
+
+    /**
+     * The latencies of the requests of every client in this JVM, blocking and non-blocking.
+     */
+    public static RequestTimings allClients()
+    {
+        return ALL_CLIENTS;
+    }
+
+    /**
+     * The latencies of the requests made under the given tag, or null if there were none.
+     */
+    public LatencyHistogram forTag(String tag)
+    {
+        return byTag.get(tag == null ? UNTAGGED : tag);
+    }
+
+    /**
+     * The latencies of each request tag, in order of tag.
+     */
+    public Map<String, LatencyHistogram> getByTag()
+    {
+        return new TreeMap<>(byTag);
+    }
+}
@@ -0,0 +1,206 @@
+package Weeter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A declarative description of what a Movie DB API response must look like, compiled into a
+ * {@link ResponseValidator} that checks responses against it in one streaming pass.
+ *
+ * A spec is made of the status codes allowed and rules on paths into the body. A path is a dotted list of member
+ * names with [n] for the nth element of an array and [*] for every element, such as "changes[*].items[0].id"; the
+ * empty path is the body itself. Rules are relative to where their parent is found: "changes[*].key" is required of
+ * every change there turns out to be, and holds trivially when there are none, while "changes" is required of the
+ * body. A spec with only status codes never reads the body.
+ *
+ * Specs are built up with chained calls and compiled once, usually into a constant:
+ * new ResponseSpec().status(200).require("changes").arraySize("changes", 0, Integer.MAX_VALUE).require("changes[*].key").compile()
+ */
+public class ResponseSpec {
+
+    private final List<Integer> statusCodes = new ArrayList<>();
+    private final List<Rule> rules = new ArrayList<>();
+
+    /**
+     * Allows the given status codes. With none given any status is allowed.
+     */
+    public ResponseSpec status(int... codes)
+    {
+        for (int code : codes) {
+            statusCodes.add(code);
+        }
+        return this;
+    }
+
+    /**
+     * Requires the path to be present wherever its parent is.
+     */
+    public ResponseSpec require(String path)
+    {
+        rules.add(new Rule(Kind.REQUIRE, path));
+        return this;
+    }
+
+    /**
+     * Requires the value at the path to be an array of at least min and at most max elements. The check fails as
+     * soon as an array goes past max, without reading the rest of it.
+     */
+    public ResponseSpec arraySize(String path, int min, int max)
+    {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("The array size bounds " + min + " to " + max + " are not valid");
+        }
+
+        Rule rule = new Rule(Kind.ARRAY_SIZE, path);
+        rule.min = min;
+        rule.max = max;
+        rules.add(rule);
+        return this;
+    }
+
+    /**
+     * Requires the value at the path to be an object with no members other than the given ones.
+     */
+    public ResponseSpec onlyMembers(String path, String... names)
+    {
+        Rule rule = new Rule(Kind.ONLY_MEMBERS, path);
+        rule.names = names;
+        rules.add(rule);
+        return this;
+    }
+
+    /**
+     * Requires the value at the path, wherever it is found, to be a string, number, boolean or null the predicate
+     * accepts. Strings are passed as a String, numbers as a Double, booleans as a Boolean and null as null. The
+     * description finishes the sentence "expected ..." when the check fails.
+     */
+    public ResponseSpec value(String path, String description, Predicate<Object> predicate)
+    {
+        Rule rule = new Rule(Kind.VALUE, path);
+        rule.check = new ResponseValidator.ValueCheck(description, predicate);
+        rules.add(rule);
+        return this;
+    }
+
+    /**
+     * Builds the validator. Throws an IllegalArgumentException for a path that cannot be parsed, or for rules that
+     * expect different kinds of value at the same path.
+     */
+    public ResponseValidator compile()
+    {
+        ResponseValidator.Node root = new ResponseValidator.Node();
+
+        for (Rule rule : rules) {
+
+            List<Object> steps = parse(rule.path);
+            ResponseValidator.Node parent = root.descend(steps.subList(0, Math.max(0, steps.size() - 1)));
+            ResponseValidator.Node node = steps.isEmpty() ? root : parent.descend(steps.subList(steps.size() - 1, steps.size()));
+
+            switch (rule.kind) {
+                case REQUIRE:
+                    if (!steps.isEmpty()) {
+                        parent.require(steps.get(steps.size() - 1));
+                    }
+                    break;
+                case ARRAY_SIZE:
+                    node.sizeBetween(rule.min, rule.max);
+                    break;
+                case ONLY_MEMBERS:
+                    node.allowOnly(new LinkedHashSet<>(Arrays.asList(rule.names)));
+                    break;
+                case VALUE:
+                    node.addCheck(rule.check);
+                    break;
+            }
+        }
+
+        root.freeze("$");
+
+        int[] codes = new int[statusCodes.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = statusCodes.get(i);
+        }
+        return new ResponseValidator(codes, root);
+    }
+
+    /**
+     * Splits a path into its steps: a String for a member name, an Integer for an element index, and
+     * {@link ResponseValidator#EVERY_ELEMENT} for [*].
+     */
+    static List<Object> parse(String path)
+    {
+        List<Object> steps = new ArrayList<>();
+
+        int i = 0;
+        while (i < path.length()) {
+
+            char c = path.charAt(i);
+            if (c == '[') {
+
+                int close = path.indexOf(']', i);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed [ in path " + path);
+                }
+
+                String index = path.substring(i + 1, close);
+                if ("*".equals(index)) {
+                    steps.add(ResponseValidator.EVERY_ELEMENT);
+                }
+                else {
+                    try {
+                        steps.add(Integer.valueOf(index));
+                    }
+                    catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Bad index [" + index + "] in path " + path);
+                    }
+                    if ((Integer) steps.get(steps.size() - 1) < 0) {
+                        throw new IllegalArgumentException("Negative index [" + index + "] in path " + path);
+                    }
+                }
+                i = close + 1;
+            }
+            else {
+
+                if (c == '.') {
+                    if (steps.isEmpty()) {
+                        throw new IllegalArgumentException("Path " + path + " starts with a dot");
+                    }
+                    i++;
+                }
+
+                int end = i;
+                while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == i) {
+                    throw new IllegalArgumentException("Empty member name in path " + path);
+                }
+
+                steps.add(path.substring(i, end));
+                i = end;
+            }
+        }
+        return steps;
+    }
+
+    private enum Kind { REQUIRE, ARRAY_SIZE, ONLY_MEMBERS, VALUE }
+
+    private static class Rule {
+
+        private final Kind kind;
+        private final String path;
+        private int min;
+        private int max;
+        private String[] names;
+        private ResponseValidator.ValueCheck check;
+
+        Rule(Kind kind, String path)
+        {
+            this.kind = kind;
+            this.path = path;
+        }
+    }
+}
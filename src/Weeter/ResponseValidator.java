@@ -0,0 +1,465 @@
+package Weeter;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Checks responses against a compiled {@link ResponseSpec} in one pass over the body.
+ *
+ * The spec's paths are compiled into a tree that mirrors the shape the body must have. The body is read with a
+ * streaming {@link JsonReader} straight off the response stream, following the tree down: every rule is checked as
+ * its value goes by, anything no rule looks at is skipped without being parsed into strings or numbers, and nothing
+ * of the body is kept. Reading stops at the first failure, so a body that is wrong early is not read to the end.
+ *
+ * A validator is immutable and can be shared by any number of threads.
+ */
+public class ResponseValidator {
+
+    /**
+     * The step for [*] in a parsed path.
+     */
+    static final Object EVERY_ELEMENT = new Object();
+
+    private final int[] statusCodes;
+    private final Node root;
+
+    private final ResponseHandler<ValidationResult> handler = new ResponseHandler<ValidationResult>() {
+
+        @Override
+        public ValidationResult handleResponse(HttpResponse response) throws IOException {
+
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (!statusAllowed(statusCode) || root.inert) {
+                return validate(statusCode, null);
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return new ValidationResult(statusCode, null, "there is no body");
+            }
+
+            InputStream content = entity.getContent();
+            try {
+                return validate(statusCode, new InputStreamReader(content, StandardCharsets.UTF_8));
+            }
+            finally {
+                content.close();
+            }
+        }
+    };
+
+    ResponseValidator(int[] statusCodes, Node root)
+    {
+        this.statusCodes = statusCodes;
+        this.root = root;
+    }
+
+    /**
+     * Returns a handler that checks the status code and then, if the spec has any rules on the body, streams the
+     * body through them.
+     */
+    public ResponseHandler<ValidationResult> handler()
+    {
+        return handler;
+    }
+
+    /**
+     * Checks a status code and body. The body is only read if the status code is allowed and the spec has rules on
+     * it, and may be null otherwise.
+     */
+    public ValidationResult validate(int statusCode, Reader body) throws IOException
+    {
+        if (!statusAllowed(statusCode)) {
+            return new ValidationResult(statusCode, null, "expected status " + describeStatusCodes() + " but got " + statusCode);
+        }
+        if (root.inert) {
+            return new ValidationResult(statusCode, null, null);
+        }
+
+        JsonReader reader = new JsonReader(body);
+        Failure failure;
+        try {
+            failure = check(reader, root.self);
+        }
+        catch (MalformedJsonException | EOFException ex) {
+            return new ValidationResult(statusCode, null, "the body is not valid JSON: " + ex.getMessage());
+        }
+
+        if (failure != null) {
+            return new ValidationResult(statusCode, "$" + failure.location, failure.message);
+        }
+        return new ValidationResult(statusCode, null, null);
+    }
+
+    private boolean statusAllowed(int statusCode)
+    {
+        if (statusCodes.length == 0) {
+            return true;
+        }
+        for (int code : statusCodes) {
+            if (code == statusCode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String describeStatusCodes()
+    {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < statusCodes.length; i++) {
+            result.append(i == 0 ? "" : i == statusCodes.length - 1 ? " or " : ", ").append(statusCodes[i]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reads the next value, checking it against every node that applies to it, and returns the first failure or null.
+     */
+    private static Failure check(JsonReader reader, List<Node> nodes) throws IOException
+    {
+        if (nodes == null) {
+            reader.skipValue();
+            return null;
+        }
+
+        JsonToken token = reader.peek();
+        for (Node node : nodes) {
+            if (node.expects != null && node.expects != kindOf(token)) {
+                return new Failure("expected " + node.expects + " but found " + kindOf(token));
+            }
+        }
+
+        switch (token) {
+            case BEGIN_OBJECT:
+                return checkObject(reader, nodes);
+            case BEGIN_ARRAY:
+                return checkArray(reader, nodes);
+            default:
+                return checkValue(reader, nodes, token);
+        }
+    }
+
+    private static Failure checkObject(JsonReader reader, List<Node> nodes) throws IOException
+    {
+        Set<String> seen = null;
+        for (Node node : nodes) {
+            if (!node.requiredMembers.isEmpty()) {
+                seen = new LinkedHashSet<>();
+            }
+        }
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+
+            String name = reader.nextName();
+            if (seen != null) {
+                seen.add(name);
+            }
+
+            List<Node> children = null;
+            for (Node node : nodes) {
+
+                if (node.allowedMembers != null && !node.allowedMembers.contains(name)) {
+                    return new Failure("has the unexpected member \"" + name + "\"");
+                }
+                children = merge(children, node.members.get(name));
+            }
+
+            Failure failure = check(reader, children);
+            if (failure != null) {
+                return failure.at("." + name);
+            }
+        }
+        reader.endObject();
+
+        for (Node node : nodes) {
+            for (String name : node.requiredMembers) {
+                if (!seen.contains(name)) {
+                    return new Failure("is missing \"" + name + "\"");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Failure checkArray(JsonReader reader, List<Node> nodes) throws IOException
+    {
+        int max = Integer.MAX_VALUE;
+        for (Node node : nodes) {
+            max = Math.min(max, node.maxElements);
+        }
+
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+
+            if (count == max) {
+                return new Failure("has more than " + max + " elements");
+            }
+
+            List<Node> children = null;
+            for (Node node : nodes) {
+                if (!node.elements.isEmpty()) {
+                    children = merge(children, node.elements.get(count));
+                }
+                children = merge(children, node.everyElement);
+            }
+
+            Failure failure = check(reader, children);
+            if (failure != null) {
+                return failure.at("[" + count + "]");
+            }
+            count++;
+        }
+        reader.endArray();
+
+        for (Node node : nodes) {
+            if (count < node.minElements) {
+                return new Failure("has " + count + " elements, expected at least " + node.minElements);
+            }
+        }
+        return null;
+    }
+
+    private static Failure checkValue(JsonReader reader, List<Node> nodes, JsonToken token) throws IOException
+    {
+        Object value;
+        switch (token) {
+            case STRING:
+                value = reader.nextString();
+                break;
+            case NUMBER:
+                value = reader.nextDouble();
+                break;
+            case BOOLEAN:
+                value = reader.nextBoolean();
+                break;
+            case NULL:
+                reader.nextNull();
+                value = null;
+                break;
+            default:
+                throw new MalformedJsonException("Unexpected " + token);
+        }
+
+        for (Node node : nodes) {
+            for (ValueCheck check : node.checks) {
+                if (!check.predicate.test(value)) {
+                    return new Failure("expected " + check.description + " but found " + (value instanceof String ? "\"" + value + "\"" : value));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a node to the ones a value is checked against, leaving out nodes with nothing to check. A single node is
+     * passed on as its own cached list, so the usual case allocates nothing.
+     */
+    private static List<Node> merge(List<Node> nodes, Node node)
+    {
+        if (node == null || node.inert) {
+            return nodes;
+        }
+        if (nodes == null) {
+            return node.self;
+        }
+
+        List<Node> result = new ArrayList<>(nodes);
+        result.add(node);
+        return result;
+    }
+
+    private static String kindOf(JsonToken token)
+    {
+        switch (token) {
+            case BEGIN_OBJECT:
+                return Node.OBJECT;
+            case BEGIN_ARRAY:
+                return Node.ARRAY;
+            default:
+                return Node.VALUE;
+        }
+    }
+
+    /**
+     * A predicate on a single value, and what it expects in words.
+     */
+    static class ValueCheck {
+
+        private final String description;
+        private final Predicate<Object> predicate;
+
+        ValueCheck(String description, Predicate<Object> predicate)
+        {
+            this.description = description;
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * One path of the spec: the rules on the value there and the paths below it.
+     */
+    static class Node {
+
+        static final String OBJECT = "an object";
+        static final String ARRAY = "an array";
+        static final String VALUE = "a value";
+
+        private final Map<String, Node> members = new LinkedHashMap<>();
+        private final Map<Integer, Node> elements = new HashMap<>();
+        private Node everyElement;
+
+        private final Set<String> requiredMembers = new LinkedHashSet<>();
+        private Set<String> allowedMembers;
+        private int minElements;
+        private int maxElements = Integer.MAX_VALUE;
+        private boolean sized;
+        private final List<ValueCheck> checks = new ArrayList<>();
+
+        private final List<Node> self = Collections.singletonList(this);
+        private String expects;
+        private boolean inert;
+
+        /**
+         * Returns the node at the given steps below this one, creating any that are missing.
+         */
+        Node descend(List<Object> steps)
+        {
+            Node node = this;
+            for (Object step : steps) {
+
+                Node child;
+                if (step == EVERY_ELEMENT) {
+                    child = node.everyElement;
+                    if (child == null) {
+                        child = node.everyElement = new Node();
+                    }
+                }
+                else if (step instanceof Integer) {
+                    child = node.elements.get(step);
+                    if (child == null) {
+                        child = new Node();
+                        node.elements.put((Integer) step, child);
+                    }
+                }
+                else {
+                    child = node.members.get(step);
+                    if (child == null) {
+                        child = new Node();
+                        node.members.put((String) step, child);
+                    }
+                }
+                node = child;
+            }
+            return node;
+        }
+
+        void require(Object step)
+        {
+            if (step instanceof String) {
+                requiredMembers.add((String) step);
+            }
+            else if (step instanceof Integer) {
+                minElements = Math.max(minElements, (Integer) step + 1);
+            }
+        }
+
+        void sizeBetween(int min, int max)
+        {
+            minElements = Math.max(minElements, min);
+            maxElements = Math.min(maxElements, max);
+            sized = true;
+        }
+
+        void allowOnly(Set<String> names)
+        {
+            if (allowedMembers == null) {
+                allowedMembers = names;
+            }
+            else {
+                allowedMembers.retainAll(names);
+            }
+        }
+
+        void addCheck(ValueCheck check)
+        {
+            checks.add(check);
+        }
+
+        /**
+         * Works out, for this node and every node below it, what kind of value it expects and whether it checks
+         * anything at all, throwing if its rules disagree.
+         */
+        void freeze(String location)
+        {
+            boolean object = !members.isEmpty() || !requiredMembers.isEmpty() || allowedMembers != null;
+            boolean array = !elements.isEmpty() || everyElement != null || sized || minElements > 0;
+            boolean value = !checks.isEmpty();
+
+            if ((object ? 1 : 0) + (array ? 1 : 0) + (value ? 1 : 0) > 1) {
+                throw new IllegalArgumentException("The rules on " + location + " expect more than one kind of value");
+            }
+            if (minElements > maxElements) {
+                throw new IllegalArgumentException("The rules on " + location + " need at least " + minElements + " elements but allow at most " + maxElements);
+            }
+            expects = object ? OBJECT : array ? ARRAY : value ? VALUE : null;
+
+            inert = expects == null;
+            for (Map.Entry<String, Node> member : members.entrySet()) {
+                member.getValue().freeze(location + "." + member.getKey());
+                inert &= member.getValue().inert;
+            }
+            for (Map.Entry<Integer, Node> element : elements.entrySet()) {
+                element.getValue().freeze(location + "[" + element.getKey() + "]");
+                inert &= element.getValue().inert;
+            }
+            if (everyElement != null) {
+                everyElement.freeze(location + "[*]");
+                inert &= everyElement.inert;
+            }
+        }
+    }
+
+    /**
+     * The first rule a body broke, and where. The location is built up on the way back out of the body, so nothing is
+     * spent on it while the body checks out.
+     */
+    private static class Failure {
+
+        private final String message;
+        private String location = "";
+
+        Failure(String message)
+        {
+            this.message = message;
+        }
+
+        Failure at(String step)
+        {
+            location = step + location;
+            return this;
+        }
+    }
+}
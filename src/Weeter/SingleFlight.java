@@ -0,0 +1,265 @@
+package Weeter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Lets identical GETs that are in flight at the same time share one request.
+ *
+ * Requests are keyed by their normalized URL together with the handler that reads the response. The first caller
+ * with a key makes the request; anyone asking for the same key before it finishes waits for that request and gets
+ * the very same result, or the same exception. Once it finishes the key is free again, so nothing is kept: this
+ * merges bursts, it is not a cache. Coalesced requests use no connection and none of the rate budget.
+ *
+ * Because the result is shared, it must be something none of its callers change. Every handler in the suite returns
+ * such a value.
+ *
+ * URLs are normalized by lower-casing the scheme and host, dropping a default port and any fragment, and sorting the
+ * query parameters by name, so "?language=es&api_key=k" and "?api_key=k&language=es" are the same request.
+ */
+public class SingleFlight {
+
+    private static final Comparator<String> BY_PARAMETER_NAME = new Comparator<String>() {
+
+        @Override
+        public int compare(String a, String b) {
+            return parameterName(a).compareTo(parameterName(b));
+        }
+    };
+
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * A request that can be shared.
+     */
+    public interface Call<T> {
+
+        T call() throws IOException;
+    }
+
+    /**
+     * Makes the call, or waits for the same one already in flight and returns its result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String url, Object handler, Call<? extends T> call) throws IOException
+    {
+        Key key = new Key(normalize(url), handler);
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+
+        if (leader != null) {
+            coalesced.increment();
+            return (T) await(leader);
+        }
+
+        requests.increment();
+        T result;
+        try {
+            result = call.call();
+        }
+        catch (IOException | RuntimeException | Error ex) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(ex);
+            throw ex;
+        }
+
+        inFlight.remove(key, mine);
+        mine.complete(result);
+        return result;
+    }
+
+    /**
+     * Starts the call, or joins the same one already in flight. Each caller gets a future of its own, so cancelling
+     * it does not affect the others.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String url, Object handler, Supplier<CompletableFuture<T>> call)
+    {
+        final Key key = new Key(normalize(url), handler);
+
+        final CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+
+        if (leader != null) {
+            coalesced.increment();
+            return (CompletableFuture<T>) leader.copy();
+        }
+
+        requests.increment();
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        }
+        catch (RuntimeException | Error ex) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(ex);
+            throw ex;
+        }
+
+        started.whenComplete(new BiConsumer<T, Throwable>() {
+
+            @Override
+            public void accept(T result, Throwable error) {
+
+                inFlight.remove(key, mine);
+                if (error != null) {
+                    mine.completeExceptionally(error);
+                }
+                else {
+                    mine.complete(result);
+                }
+            }
+        });
+        return (CompletableFuture<T>) mine.copy();
+    }
+
+    /**
+     * Requests actually made, one for every group of coalesced callers.
+     */
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    /**
+     * Callers that shared a request already in flight instead of making their own.
+     */
+    public long getCoalesced()
+    {
+        return coalesced.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getRequests() + " requests made, " + getCoalesced() + " more coalesced into them";
+    }
+
+    /**
+     * Returns the URL in a form that is the same for every way of writing the same request.
+     */
+    static String normalize(String url)
+    {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        }
+        catch (IllegalArgumentException ex) {
+            // Not ours to judge; the client will fail on it in its own way
+            return url;
+        }
+
+        if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+            return url;
+        }
+
+        String scheme = uri.getScheme().toLowerCase();
+        StringBuilder result = new StringBuilder(url.length()).append(scheme).append("://");
+
+        if (uri.getRawUserInfo() != null) {
+            result.append(uri.getRawUserInfo()).append('@');
+        }
+        result.append(uri.getHost() == null ? uri.getRawAuthority() : uri.getHost().toLowerCase());
+
+        int port = uri.getPort();
+        if (port >= 0 && !(port == 80 && "http".equals(scheme)) && !(port == 443 && "https".equals(scheme))) {
+            result.append(':').append(port);
+        }
+
+        String path = uri.getRawPath();
+        result.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+
+            List<String> parameters = new ArrayList<>(Arrays.asList(query.split("&")));
+            parameters.removeAll(Collections.singleton(""));
+
+            // A stable sort, so repeated parameters keep their order
+            Collections.sort(parameters, BY_PARAMETER_NAME);
+
+            for (int i = 0; i < parameters.size(); i++) {
+                result.append(i == 0 ? '?' : '&').append(parameters.get(i));
+            }
+        }
+        return result.toString();
+    }
+
+    private static String parameterName(String parameter)
+    {
+        int equals = parameter.indexOf('=');
+        return equals < 0 ? parameter : parameter.substring(0, equals);
+    }
+
+    private static Object await(CompletableFuture<Object> leader) throws IOException
+    {
+        try {
+            return leader.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a coalesced request");
+        }
+        catch (ExecutionException ex) {
+            // Hand every caller the failure of the request they shared
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A normalized URL and the handler reading its response. Handlers are compared by identity.
+     */
+    private static final class Key {
+
+        private final String url;
+        private final Object handler;
+
+        Key(String url, Object handler)
+        {
+            this.url = url;
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return url.equals(key.url) && handler == key.handler;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * url.hashCode() + System.identityHashCode(handler);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package Weeter;
+
+import org.apache.http.pool.PoolStats;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the resources of a long run at a fixed interval and tells whether any of them kept growing.
+ *
+ * Each {@link SoakSample} holds the heap in use and the heap left after the last collection (from the
+ * MemoryMXBean and the memory pools), the number and duration of collections since the previous sample (from the
+ * GarbageCollectorMXBeans), the open file descriptors, the client's leased and idle connections, and the live
+ * threads.
+ *
+ * A leak shows up as a slow upward trend under all the noise, so {@link #findUpwardTrends()} fits a least-squares
+ * line through each figure, leaving out the first quarter of the run while things warm up, and reports any whose line
+ * climbs by more than both a fixed amount and a share of its mean over the run. The heap is judged on what is left
+ * after collection rather than on its sawtooth, and GC on its rate rather than its running totals.
+ */
+public class SoakMonitor {
+
+    private static final int MIN_SAMPLES = 8;
+
+    private static final Metric[] METRICS = {
+            new Metric("heap after GC (bytes)", 16 * 1048576, 0.10) {
+
+                @Override
+                double valueOf(SoakSample sample) {
+                    return sample.getHeapAfterGcBytes();
+                }
+            },
+            new Metric("GC count per sample", 5, 0.50) {
+
+                @Override
+                double valueOf(SoakSample sample) {
+                    return sample.getGcCount();
+                }
+            },
+            new Metric("GC time per sample (ms)", 100, 0.50) {
+
+                @Override
+                double valueOf(SoakSample sample) {
+                    return sample.getGcMillis();
+                }
+            },
+            new Metric("open file descriptors", 16, 0.10) {
+
+                @Override
+                double valueOf(SoakSample sample) {
+                    return sample.getOpenFileDescriptors();
+                }
+            },
+            new Metric("connections", 4, 0.25) {
+
+                @Override
+                double valueOf(SoakSample sample) {
+                    return sample.getLeasedConnections() + sample.getAvailableConnections();
+                }
+            },
+            new Metric("threads", 8, 0.10) {
+
+                @Override
+                double valueOf(SoakSample sample) {
+                    return sample.getThreads();
+                }
+            }
+    };
+
+    private final MovieDbClient client;
+    private final long intervalMillis;
+    private final List<SoakSample> samples = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+    private long startNanos;
+    private long lastGcCount;
+    private long lastGcMillis;
+
+    /**
+     * Creates a monitor that samples every intervalMillis, taking the connection counts from the given client.
+     */
+    public SoakMonitor(MovieDbClient client, long intervalMillis)
+    {
+        this.client = client;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Takes a first sample now and then one every interval until {@link #stop()}.
+     */
+    public synchronized void start()
+    {
+        if (scheduler != null) {
+            throw new IllegalStateException("The soak monitor is already running");
+        }
+
+        startNanos = System.nanoTime();
+        lastGcCount = totalGcCount();
+        lastGcMillis = totalGcMillis();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "soak-monitor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        scheduler.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                sample();
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling, taking one last sample.
+     */
+    public synchronized void stop()
+    {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            sample();
+        }
+    }
+
+    /**
+     * Takes a sample right away.
+     */
+    public synchronized SoakSample sample()
+    {
+        long gcCount = totalGcCount();
+        long gcMillis = totalGcMillis();
+
+        PoolStats pool = client.getPoolStats();
+
+        SoakSample sample = new SoakSample(
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                heapAfterGc(),
+                gcCount - lastGcCount,
+                gcMillis - lastGcMillis,
+                openFileDescriptors(),
+                pool.getLeased(),
+                pool.getAvailable(),
+                ManagementFactory.getThreadMXBean().getThreadCount());
+
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+        samples.add(sample);
+
+        return sample;
+    }
+
+    public synchronized List<SoakSample> getSamples()
+    {
+        return new ArrayList<>(samples);
+    }
+
+    /**
+     * Describes every figure that trended upward over the run, or returns an empty list if none did or there are not
+     * yet enough samples to tell.
+     */
+    public synchronized List<String> findUpwardTrends()
+    {
+        List<String> result = new ArrayList<>();
+
+        List<SoakSample> judged = samples.subList(samples.size() / 4, samples.size());
+        if (judged.size() < MIN_SAMPLES) {
+            return result;
+        }
+
+        for (Metric metric : METRICS) {
+            String trend = metric.findUpwardTrend(judged);
+            if (trend != null) {
+                result.add(trend);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The first and last samples and the number taken, for the end of a run.
+     */
+    public synchronized String summary()
+    {
+        if (samples.isEmpty()) {
+            return "no samples";
+        }
+        return samples.size() + " samples\nfirst: " + samples.get(0) + "\nlast:  " + samples.get(samples.size() - 1);
+    }
+
+    private static long heapAfterGc()
+    {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                result += usage.getUsed();
+            }
+        }
+        return result;
+    }
+
+    private static long totalGcCount()
+    {
+        long result = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, collector.getCollectionCount());
+        }
+        return result;
+    }
+
+    private static long totalGcMillis()
+    {
+        long result = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, collector.getCollectionTime());
+        }
+        return result;
+    }
+
+    private static long openFileDescriptors()
+    {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            return ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+        }
+        return -1;
+    }
+
+    /**
+     * One figure of a sample, and how much it may climb over a run before it counts as a leak.
+     */
+    private abstract static class Metric {
+
+        private final String name;
+        private final double minGrowth;
+        private final double maxRelativeGrowth;
+
+        Metric(String name, double minGrowth, double maxRelativeGrowth)
+        {
+            this.name = name;
+            this.minGrowth = minGrowth;
+            this.maxRelativeGrowth = maxRelativeGrowth;
+        }
+
+        abstract double valueOf(SoakSample sample);
+
+        String findUpwardTrend(List<SoakSample> samples)
+        {
+            double n = samples.size();
+            double sumT = 0;
+            double sumY = 0;
+            for (SoakSample sample : samples) {
+                double value = valueOf(sample);
+                if (value < 0) {
+                    // Not available on this platform
+                    return null;
+                }
+                sumT += sample.getElapsedMillis();
+                sumY += value;
+            }
+
+            double meanT = sumT / n;
+            double meanY = sumY / n;
+
+            double covariance = 0;
+            double variance = 0;
+            for (SoakSample sample : samples) {
+                double dt = sample.getElapsedMillis() - meanT;
+                covariance += dt * (valueOf(sample) - meanY);
+                variance += dt * dt;
+            }
+            if (variance == 0) {
+                return null;
+            }
+
+            double span = samples.get(samples.size() - 1).getElapsedMillis() - samples.get(0).getElapsedMillis();
+            double growth = covariance / variance * span;
+
+            if (growth <= minGrowth || growth <= maxRelativeGrowth * meanY) {
+                return null;
+            }
+            return String.format("%s climbed by %.0f over %.0f s (mean %.0f)", name, growth, span / 1e3, meanY);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package Weeter;
+
+/**
+ * What a {@link SoakMonitor} saw at one point in a soak run. The GC figures cover the time since the previous sample;
+ * the rest are as they were at the time of the sample.
+ */
+public class SoakSample {
+
+    private final long elapsedMillis;
+    private final long heapUsedBytes;
+    private final long heapAfterGcBytes;
+    private final long gcCount;
+    private final long gcMillis;
+    private final long openFileDescriptors;
+    private final int leasedConnections;
+    private final int availableConnections;
+    private final int threads;
+
+    public SoakSample(long elapsedMillis, long heapUsedBytes, long heapAfterGcBytes, long gcCount, long gcMillis,
+                      long openFileDescriptors, int leasedConnections, int availableConnections, int threads)
+    {
+        this.elapsedMillis = elapsedMillis;
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapAfterGcBytes = heapAfterGcBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+        this.openFileDescriptors = openFileDescriptors;
+        this.leasedConnections = leasedConnections;
+        this.availableConnections = availableConnections;
+        this.threads = threads;
+    }
+
+    /**
+     * How long after the monitor started the sample was taken.
+     */
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    public long getHeapUsedBytes()
+    {
+        return heapUsedBytes;
+    }
+
+    /**
+     * The heap still in use right after the last collection of each pool, which is what grows when memory leaks.
+     */
+    public long getHeapAfterGcBytes()
+    {
+        return heapAfterGcBytes;
+    }
+
+    /**
+     * How many collections ran since the previous sample.
+     */
+    public long getGcCount()
+    {
+        return gcCount;
+    }
+
+    /**
+     * How long the collections since the previous sample took.
+     */
+    public long getGcMillis()
+    {
+        return gcMillis;
+    }
+
+    /**
+     * The file descriptors the process has open, or -1 where the platform does not say.
+     */
+    public long getOpenFileDescriptors()
+    {
+        return openFileDescriptors;
+    }
+
+    public int getLeasedConnections()
+    {
+        return leasedConnections;
+    }
+
+    public int getAvailableConnections()
+    {
+        return availableConnections;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%7.1f s: heap %.1f MB (%.1f MB after GC), %d GCs in %d ms, %d fds, %d leased + %d idle connections, %d threads",
+                elapsedMillis / 1e3, heapUsedBytes / 1048576.0, heapAfterGcBytes / 1048576.0, gcCount, gcMillis,
+                openFileDescriptors, leasedConnections, availableConnections, threads);
+    }
+}
@@ -0,0 +1,469 @@
+package Weeter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in-process stand-in for the person changes endpoint of The Movie DB API.
+ *
+ * It answers /3/person/{id}/changes, and the list of changed people at /3/person/changes, the way the real API does for
+ * the cases the suite checks: a 401 for a missing or wrong api_key, a 500 for dates it cannot parse, an empty "changes"
+ * list for a person ID that is not a number, and generated fixture changes for everything else. Asking for a page
+ * splits the changes into pages of {@link #setPageSize(int)} items and adds "page" and "total_pages", as the API's
+ * paged responses do. Latency and 429 Too Many Requests responses can be injected so the client can be exercised at
+ * full speed without touching the internet.
+ *
+ * Bodies of 256 bytes or more are gzipped for clients that send Accept-Encoding: gzip, as the real API does.
+ * Successful responses carry an ETag, and a conditional request whose If-None-Match still matches gets a 304 Not
+ * Modified. A Cache-Control max-age is only sent once {@link #setMaxAgeSeconds(int)} has been given one.
+ *
+ * It can also be run on its own:
+ * java -cp ... Weeter.StubMovieDbServer [port] [apiToken]
+ */
+public class StubMovieDbServer implements Closeable {
+
+    private static final Pattern PERSON_CHANGES = Pattern.compile("/3/person/([^/]+)/changes/?");
+    private static final Pattern CHANGED_PEOPLE = Pattern.compile("/3/person/changes/?");
+    private static final int CHANGED_PEOPLE_PAGE_SIZE = 100;
+
+    private static final long MAX_RANGE_DAYS = 14;
+    private static final int MAX_PAGE = 1000;
+    private static final int MIN_COMPRESSED_BYTES = 256;
+
+    private static final String INVALID_API_KEY =
+            "{\"status_code\":7,\"status_message\":\"Invalid API key: You must be granted a valid key.\",\"success\":false}";
+    private static final String INTERNAL_ERROR =
+            "{\"status_code\":11,\"status_message\":\"Internal error: Something went wrong, contact TMDb.\",\"success\":false}";
+    private static final String INVALID_DATE_RANGE =
+            "{\"status_code\":22,\"status_message\":\"Invalid date range: Should be a range no longer than 14 days.\",\"success\":false}";
+    private static final String INVALID_PAGE =
+            "{\"status_code\":22,\"status_message\":\"Invalid page: Pages start at 1 and max at 1000. They are expected to be an integer.\",\"success\":false}";
+    private static final String NOT_FOUND =
+            "{\"status_code\":34,\"status_message\":\"The resource you requested could not be found.\",\"success\":false}";
+    private static final String EMPTY_CHANGES = "{\"changes\":[]}";
+
+    private final String apiToken;
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder throttledCount = new LongAdder();
+    private final LongAdder notModifiedCount = new LongAdder();
+    private final LongAdder compressedCount = new LongAdder();
+
+    private volatile long latencyMillis;
+    private final AtomicLong stallMillis = new AtomicLong();
+    private volatile int maxAgeSeconds = -1;
+    private volatile int pageSize = 20;
+    private volatile boolean compression = true;
+    private volatile double throttleProbability;
+    private volatile int throttleLimit;
+    private volatile long throttleWindowMillis = TimeUnit.SECONDS.toMillis(10);
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a server that accepts only the given token as a valid api_key.
+     */
+    public StubMovieDbServer(String apiToken)
+    {
+        this.apiToken = apiToken;
+    }
+
+    /**
+     * Starts listening on the loopback interface. Pass 0 to pick any free port.
+     */
+    public synchronized void start(int port) throws IOException
+    {
+        if (server != null) {
+            throw new IllegalStateException("The stub server is already running");
+        }
+
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, "stub-moviedb-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.createContext("/3/", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StubMovieDbServer.this.handle(exchange);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Returns the URL to use in place of https://api.themoviedb.org/3/.
+     */
+    public String getBaseUrl()
+    {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/3/";
+    }
+
+    /**
+     * Delays every response by the given number of milliseconds.
+     */
+    public void setLatencyMillis(long latencyMillis)
+    {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Delays the next request to arrive, and only that one, by the given number of milliseconds on top of the latency.
+     */
+    public void stallNextRequest(long stallMillis)
+    {
+        this.stallMillis.set(stallMillis);
+    }
+
+    /**
+     * Answers the given fraction of requests (0 to 1) with a 429, regardless of the request rate.
+     */
+    public void setThrottleProbability(double throttleProbability)
+    {
+        this.throttleProbability = throttleProbability;
+    }
+
+    /**
+     * Answers with a 429 once more than the given number of requests arrive within one window, like the real API.
+     * A limit of 0 turns this off.
+     */
+    public void setThrottleLimit(int requestsPerWindow, long windowMillis)
+    {
+        this.throttleWindowMillis = windowMillis;
+        this.throttleLimit = requestsPerWindow;
+    }
+
+    /**
+     * Marks successful responses as fresh for the given number of seconds. Pass -1 to leave out Cache-Control.
+     */
+    public void setMaxAgeSeconds(int maxAgeSeconds)
+    {
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * Sets how many change items a page holds when a page is asked for (default 20).
+     */
+    public void setPageSize(int pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Turns gzip compression of bodies of 256 bytes or more, for clients that accept it, on or off (default on).
+     */
+    public void setCompression(boolean compression)
+    {
+        this.compression = compression;
+    }
+
+    public long getRequestCount()
+    {
+        return requestCount.sum();
+    }
+
+    public long getThrottledCount()
+    {
+        return throttledCount.sum();
+    }
+
+    /**
+     * How many conditional requests were answered with a 304 Not Modified.
+     */
+    public long getNotModifiedCount()
+    {
+        return notModifiedCount.sum();
+    }
+
+    /**
+     * How many responses were sent gzipped.
+     */
+    public long getCompressedCount()
+    {
+        return compressedCount.sum();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+
+            requestCount.increment();
+
+            long latency = latencyMillis + stallMillis.getAndSet(0);
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+
+            long retryAfterSeconds = throttle();
+            if (retryAfterSeconds > 0) {
+                throttledCount.increment();
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+                send(exchange, 429, "{\"status_code\":25,\"status_message\":\"Your request count is over the allowed limit of "
+                        + throttleLimit + ".\",\"success\":false}");
+                return;
+            }
+
+            Matcher matcher = PERSON_CHANGES.matcher(exchange.getRequestURI().getPath());
+            boolean changedPeople = CHANGED_PEOPLE.matcher(exchange.getRequestURI().getPath()).matches();
+            if (!"GET".equals(exchange.getRequestMethod()) || !(changedPeople || matcher.matches())) {
+                send(exchange, 404, NOT_FOUND);
+                return;
+            }
+
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!apiToken.equals(query.get("api_key"))) {
+                send(exchange, 401, INVALID_API_KEY);
+                return;
+            }
+
+            LocalDate startDate;
+            LocalDate endDate;
+            try {
+                startDate = parseDate(query.get("start_date"));
+                endDate = parseDate(query.get("end_date"));
+            }
+            catch (DateTimeParseException ex) {
+                send(exchange, 500, INTERNAL_ERROR);
+                return;
+            }
+
+            // Like the API, no dates means the last 24 hours
+            long now = System.currentTimeMillis();
+            long to = endDate == null ? now : endDate.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() - 1;
+            long from = startDate == null ? to - TimeUnit.DAYS.toMillis(1) + 1 : startDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+
+            if (to - from >= TimeUnit.DAYS.toMillis(MAX_RANGE_DAYS + 1)) {
+                send(exchange, 422, INVALID_DATE_RANGE);
+                return;
+            }
+
+            int page = 0;
+            if (query.containsKey("page")) {
+                try {
+                    page = Integer.parseInt(query.get("page"));
+                }
+                catch (NumberFormatException ex) {
+                    page = -1;
+                }
+                if (page < 1 || page > MAX_PAGE) {
+                    send(exchange, 422, INVALID_PAGE);
+                    return;
+                }
+            }
+
+            if (changedPeople) {
+                sendCacheable(exchange, PersonChangesFixture.changedPeoplePage(from, Math.min(to, now), Math.max(page, 1), CHANGED_PEOPLE_PAGE_SIZE));
+                return;
+            }
+
+            int personId;
+            try {
+                personId = Integer.parseInt(matcher.group(1));
+            }
+            catch (NumberFormatException ex) {
+                send(exchange, 200, EMPTY_CHANGES);
+                return;
+            }
+
+            if (page > 0) {
+                sendCacheable(exchange, PersonChangesFixture.personChangesPage(personId, from, Math.min(to, now),
+                        PersonChangesFixture.DEFAULT_INTERVAL_MILLIS, page, pageSize));
+            }
+            else {
+                sendCacheable(exchange, PersonChangesFixture.personChanges(personId, from, Math.min(to, now), PersonChangesFixture.DEFAULT_INTERVAL_MILLIS));
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Counts the request against the current window and returns how many seconds to ask the client to wait, or 0
+     * when the request may go ahead.
+     */
+    private long throttle()
+    {
+        double probability = throttleProbability;
+        if (probability > 0 && ThreadLocalRandom.current().nextDouble() < probability) {
+            return 1;
+        }
+
+        int limit = throttleLimit;
+        if (limit <= 0) {
+            return 0;
+        }
+
+        long window = throttleWindowMillis;
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= window && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+            start = now;
+        }
+
+        if (windowCount.incrementAndGet() <= limit) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(start + window - now + 999));
+    }
+
+    /**
+     * Sends a successful response with an ETag, or a 304 if the client already holds this version.
+     */
+    private void sendCacheable(HttpExchange exchange, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        // Like most servers, the compressed variant gets an ETag of its own
+        String etag = "\"" + Integer.toHexString(body.hashCode()) + "-" + Integer.toHexString(body.length())
+                + (shouldCompress(exchange, bytes) ? "-gzip" : "") + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+
+        int maxAge = maxAgeSeconds;
+        if (maxAge >= 0) {
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=" + maxAge);
+        }
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            notModifiedCount.increment();
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        send(exchange, 200, bytes);
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException
+    {
+        send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends the body, gzipped if the client accepts it and it is big enough to be worth it.
+     */
+    private void send(HttpExchange exchange, int status, byte[] bytes) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+
+        if (shouldCompress(exchange, bytes)) {
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(bytes);
+            gzip.close();
+
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            compressedCount.increment();
+        }
+
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private boolean shouldCompress(HttpExchange exchange, byte[] bytes)
+    {
+        if (!compression || bytes.length < MIN_COMPRESSED_BYTES) {
+            return false;
+        }
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static LocalDate parseDate(String value)
+    {
+        // An empty date is treated the same as a missing one
+        return value == null || value.isEmpty() ? null : LocalDate.parse(value);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException
+    {
+        Map<String, String> result = new HashMap<>();
+        if (rawQuery == null) {
+            return result;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int split = pair.indexOf('=');
+            String name = split < 0 ? pair : pair.substring(0, split);
+            String value = split < 0 ? "" : pair.substring(split + 1);
+            result.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String token = args.length > 1 ? args[1] : "";
+
+        StubMovieDbServer server = new StubMovieDbServer(token);
+        server.start(port);
+
+        System.out.println("Stub Movie DB API listening on " + server.getBaseUrl());
+    }
+}
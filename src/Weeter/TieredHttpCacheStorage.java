@@ -0,0 +1,255 @@
+package Weeter;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.impl.client.cache.BasicHttpCacheStorage;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.DefaultHttpCacheEntrySerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An HTTP cache storage with a bounded in-memory LRU tier in front of an on-disk tier.
+ *
+ * Entries are written to both tiers. Lookups try memory first, then disk, and an entry found on disk is promoted
+ * back into memory. Each disk entry is one file named after the SHA-256 of its cache key, written to a temporary
+ * file and moved into place so a reader never sees half an entry. Pass a null directory to keep the cache in memory
+ * only.
+ *
+ * The disk tier is bounded by bytes rather than entries. Reading an entry from disk marks its file as just used, and
+ * once the files add up to more than the limit, the least recently used are deleted until they fit again. Entries
+ * deleted from disk may still be in memory; they are only gone for good once the memory tier drops them as well.
+ */
+public class TieredHttpCacheStorage implements HttpCacheStorage {
+
+    private final BasicHttpCacheStorage memory;
+    private final Path directory;
+    private final DefaultHttpCacheEntrySerializer serializer = new DefaultHttpCacheEntrySerializer();
+
+    private final long maxDiskBytes;
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final LongAdder diskReads = new LongAdder();
+    private final LongAdder diskEvictions = new LongAdder();
+
+    /**
+     * Creates a cache with the memory tier sized by the config and, unless the directory is null, a disk tier in
+     * the directory of at most maxDiskBytes, or without limit if that is 0.
+     */
+    public TieredHttpCacheStorage(CacheConfig config, File directory, long maxDiskBytes) throws IOException
+    {
+        this.memory = new BasicHttpCacheStorage(config);
+        this.directory = directory == null ? null : Files.createDirectories(directory.toPath());
+        this.maxDiskBytes = maxDiskBytes;
+
+        if (this.directory != null) {
+            trimDisk();
+        }
+    }
+
+    @Override
+    public void putEntry(String key, HttpCacheEntry entry) throws IOException
+    {
+        memory.putEntry(key, entry);
+        writeToDisk(key, entry);
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(String key) throws IOException
+    {
+        HttpCacheEntry entry = memory.getEntry(key);
+        if (entry == null && directory != null) {
+
+            entry = readFromDisk(key);
+            if (entry != null) {
+                diskReads.increment();
+                touch(fileFor(key));
+                memory.putEntry(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    @Override
+    public void removeEntry(String key) throws IOException
+    {
+        memory.removeEntry(key);
+        if (directory != null) {
+            diskBytes.addAndGet(-delete(fileFor(key)));
+        }
+    }
+
+    @Override
+    public synchronized void updateEntry(String key, HttpCacheUpdateCallback callback) throws IOException
+    {
+        HttpCacheEntry updated = callback.update(getEntry(key));
+        if (updated == null) {
+            removeEntry(key);
+        }
+        else {
+            putEntry(key, updated);
+        }
+    }
+
+    /**
+     * How many lookups missed the memory tier but were found on disk.
+     */
+    public long getDiskReadCount()
+    {
+        return diskReads.sum();
+    }
+
+    /**
+     * How many entries were deleted from disk to keep it under its limit.
+     */
+    public long getDiskEvictionCount()
+    {
+        return diskEvictions.sum();
+    }
+
+    /**
+     * The bytes the entries on disk take up.
+     */
+    public long getDiskBytes()
+    {
+        return diskBytes.get();
+    }
+
+    private void writeToDisk(String key, HttpCacheEntry entry) throws IOException
+    {
+        if (directory == null) {
+            return;
+        }
+
+        Path target = fileFor(key);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                serializer.writeTo(entry, out);
+            }
+            long previous = sizeOf(target);
+            long size = Files.size(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (diskBytes.addAndGet(size - previous) > maxDiskBytes && maxDiskBytes > 0) {
+                trimDisk();
+            }
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds up the entries on disk and, if they are over the limit, deletes the least recently used until they fit.
+     */
+    private synchronized void trimDisk() throws IOException
+    {
+        final List<Path> files = new ArrayList<>();
+        final List<BasicFileAttributes> attributes = new ArrayList<>();
+        long total = 0;
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.entry")) {
+            for (Path file : entries) {
+                try {
+                    BasicFileAttributes attribute = Files.readAttributes(file, BasicFileAttributes.class);
+                    files.add(file);
+                    attributes.add(attribute);
+                    total += attribute.size();
+                }
+                catch (NoSuchFileException ex) {
+                    // Removed since the directory was listed
+                }
+            }
+        }
+
+        if (maxDiskBytes > 0 && total > maxDiskBytes) {
+
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                order.add(i);
+            }
+            Collections.sort(order, new Comparator<Integer>() {
+
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime());
+                }
+            });
+
+            for (int i = 0; i < order.size() && total > maxDiskBytes; i++) {
+                total -= delete(files.get(order.get(i)));
+                diskEvictions.increment();
+            }
+        }
+
+        diskBytes.set(total);
+    }
+
+    /**
+     * Deletes the file if it is there, returning how many bytes it took.
+     */
+    private static long delete(Path file) throws IOException
+    {
+        long size = sizeOf(file);
+        return Files.deleteIfExists(file) ? size : 0;
+    }
+
+    private static long sizeOf(Path file) throws IOException
+    {
+        try {
+            return Files.size(file);
+        }
+        catch (NoSuchFileException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Marks the entry's file as just used, so it is the last to be deleted.
+     */
+    private static void touch(Path file)
+    {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException ex) {
+            // Deleted since it was read, which leaves nothing to keep
+        }
+    }
+
+    private HttpCacheEntry readFromDisk(String key) throws IOException
+    {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(fileFor(key)))) {
+            return serializer.readFrom(in);
+        }
+        catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private Path fileFor(String key)
+    {
+        return directory.resolve(DigestUtils.sha256Hex(key) + ".entry");
+    }
+}
@@ -0,0 +1,80 @@
+package Weeter;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every test of a run, for a {@link TimingTrend}. It can be added to a run as a listener, or fed by a
+ * {@link TimingTrendRule}.
+ *
+ * Tests are timed from when they start until they finish, including their @Before and @After methods. Tests that
+ * failed or were skipped are left out, since their timings say nothing about how fast the client or the API was.
+ * It is safe to use with tests running at the same time.
+ */
+@RunListener.ThreadSafe
+public class TimingRecorder extends RunListener {
+
+    private final Map<String, Long> started = new ConcurrentHashMap<>();
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+    private final Set<String> excluded = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void testStarted(Description description)
+    {
+        started.put(description.getMethodName(), System.nanoTime());
+    }
+
+    @Override
+    public void testFinished(Description description)
+    {
+        Long start = started.remove(description.getMethodName());
+        if (start != null) {
+            durations.put(description.getMethodName(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void testFailure(Failure failure)
+    {
+        excluded.add(failure.getDescription().getMethodName());
+    }
+
+    @Override
+    public void testAssumptionFailure(Failure failure)
+    {
+        excluded.add(failure.getDescription().getMethodName());
+    }
+
+    /**
+     * Returns the timings of every test that passed, in order of name, with the latencies of the requests each made
+     * under its own name as the {@link RequestTag}.
+     */
+    public List<TimingTrend.Entry> entries(long run, RequestTimings timings)
+    {
+        List<TimingTrend.Entry> result = new ArrayList<>();
+
+        for (Map.Entry<String, Long> duration : new TreeMap<>(durations).entrySet()) {
+
+            String test = duration.getKey();
+            if (excluded.contains(test)) {
+                continue;
+            }
+
+            LatencyHistogram latencies = timings == null ? null : timings.forTag(test);
+            long requests = latencies == null ? 0 : latencies.getCount();
+
+            result.add(new TimingTrend.Entry(run, test, duration.getValue() / 1e6, requests,
+                    requests == 0 ? 0 : latencies.getPercentileNanos(50) / 1e6,
+                    requests == 0 ? 0 : latencies.getPercentileNanos(95) / 1e6));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,265 @@
+package Weeter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The timings of past test runs, kept in a small text file, and a check of a new run against them.
+ *
+ * The file holds one line per test per run: the run's start time in epoch milliseconds, the test's name, how long
+ * it took, how many requests it made, and the median and 95th percentile of their latencies, all times in
+ * milliseconds. Only the most recent runs are kept, so the file stays a few kilobytes.
+ *
+ * A new run is compared with a rolling baseline: for each test and each figure, the median over the last few runs
+ * that had it. A figure regresses when it is above its baseline by more than a share of the baseline and by more
+ * than a fixed number of milliseconds, so tests that take a few milliseconds are not flagged for jitter. Nothing is
+ * judged until there are enough past runs.
+ */
+public class TimingTrend {
+
+    private static final String HEADER = "# run test durationMillis requests p50Millis p95Millis";
+    private static final int MIN_BASELINE_RUNS = 3;
+
+    private final File file;
+    private final int window;
+    private final int history;
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Loads the trend file, if there is one. The baseline is taken over the last window runs, and the last history
+     * runs are kept in the file.
+     */
+    public TimingTrend(File file, int window, int history) throws IOException
+    {
+        this.file = file;
+        this.window = window;
+        this.history = Math.max(history, window);
+
+        if (file.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        entries.add(Entry.parse(line));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * How many earlier runs the file holds.
+     */
+    public int getRunCount()
+    {
+        return runs(entries).size();
+    }
+
+    /**
+     * Describes every figure of the new run that regressed against the baseline, or returns an empty list.
+     */
+    public List<String> findRegressions(List<Entry> run, double threshold, double minMillis)
+    {
+        List<String> result = new ArrayList<>();
+
+        List<Long> runs = runs(entries);
+        Set<Long> recent = new LinkedHashSet<>(runs.subList(Math.max(0, runs.size() - window), runs.size()));
+
+        for (Entry current : run) {
+
+            List<Entry> past = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (entry.test.equals(current.test) && recent.contains(entry.run)) {
+                    past.add(entry);
+                }
+            }
+            if (past.size() < MIN_BASELINE_RUNS) {
+                continue;
+            }
+
+            double[] durations = new double[past.size()];
+            List<Double> p50s = new ArrayList<>();
+            List<Double> p95s = new ArrayList<>();
+            for (int i = 0; i < past.size(); i++) {
+                durations[i] = past.get(i).durationMillis;
+                if (past.get(i).requests > 0) {
+                    p50s.add(past.get(i).p50Millis);
+                    p95s.add(past.get(i).p95Millis);
+                }
+            }
+
+            check(result, current.test, "duration", current.durationMillis, median(durations), threshold, minMillis);
+
+            if (current.requests > 0 && p50s.size() >= MIN_BASELINE_RUNS) {
+                check(result, current.test, "p50 request latency", current.p50Millis, median(toArray(p50s)), threshold, minMillis);
+                check(result, current.test, "p95 request latency", current.p95Millis, median(toArray(p95s)), threshold, minMillis);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the run to the file, dropping the oldest runs past the history. The file is replaced in one move, so a
+     * run that dies part way through never leaves it half written.
+     */
+    public void append(List<Entry> run) throws IOException
+    {
+        entries.addAll(run);
+
+        List<Long> runs = runs(entries);
+        if (runs.size() > history) {
+            Set<Long> kept = new LinkedHashSet<>(runs.subList(runs.size() - history, runs.size()));
+            List<Entry> trimmed = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (kept.contains(entry.run)) {
+                    trimmed.add(entry);
+                }
+            }
+            entries.clear();
+            entries.addAll(trimmed);
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Entry entry : entries) {
+                    writer.write(entry.toString());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static void check(List<String> result, String test, String figure, double current, double baseline, double threshold, double minMillis)
+    {
+        if (current > baseline * (1 + threshold) && current - baseline > minMillis) {
+            result.add(String.format(Locale.ROOT, "%s %s %.1f ms vs baseline %.1f ms (+%.0f%%)", test, figure, current,
+                    baseline, baseline == 0 ? 100.0 : (current - baseline) / baseline * 100));
+        }
+    }
+
+    /**
+     * The distinct runs in the order they were recorded.
+     */
+    private static List<Long> runs(List<Entry> entries)
+    {
+        Set<Long> result = new LinkedHashSet<>();
+        for (Entry entry : entries) {
+            result.add(entry.run);
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static double[] toArray(List<Double> values)
+    {
+        double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static double median(double[] values)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * One test's timings in one run.
+     */
+    public static class Entry {
+
+        private final long run;
+        private final String test;
+        private final double durationMillis;
+        private final long requests;
+        private final double p50Millis;
+        private final double p95Millis;
+
+        public Entry(long run, String test, double durationMillis, long requests, double p50Millis, double p95Millis)
+        {
+            if (test.isEmpty() || test.contains(" ")) {
+                throw new IllegalArgumentException("The test name \"" + test + "\" cannot be written to a trend file");
+            }
+
+            this.run = run;
+            this.test = test;
+            this.durationMillis = durationMillis;
+            this.requests = requests;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+        }
+
+        static Entry parse(String line) throws IOException
+        {
+            String[] fields = line.trim().split(" +");
+            if (fields.length != 6) {
+                throw new IOException("Bad line in the trend file: " + line);
+            }
+
+            try {
+                return new Entry(Long.parseLong(fields[0]), fields[1], Double.parseDouble(fields[2]),
+                        Long.parseLong(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[5]));
+            }
+            catch (IllegalArgumentException ex) {
+                throw new IOException("Bad line in the trend file: " + line, ex);
+            }
+        }
+
+        public String getTest()
+        {
+            return test;
+        }
+
+        public double getDurationMillis()
+        {
+            return durationMillis;
+        }
+
+        public long getRequests()
+        {
+            return requests;
+        }
+
+        public double getP50Millis()
+        {
+            return p50Millis;
+        }
+
+        public double getP95Millis()
+        {
+            return p95Millis;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(Locale.ROOT, "%d %s %.1f %d %.2f %.2f", run, test, durationMillis, requests, p50Millis, p95Millis);
+        }
+    }
+}
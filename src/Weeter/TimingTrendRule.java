@@ -0,0 +1,121 @@
+package Weeter;
+
+import org.junit.AssumptionViolatedException;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runners.model.Statement;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Keeps the timings of a test class's runs in a {@link TimingTrend} file and checks each run against the ones before.
+ *
+ * It is used as a @ClassRule, with {@link #timer()} as a @Rule to time each test, so it works under any runner and
+ * with the tests run one at a time or all at once. Each test is timed by a {@link TimingRecorder}, and the latencies
+ * of its requests are taken from {@link RequestTimings#allClients()}, so requests through a client the test built for
+ * itself count as well as those through the shared ones.
+ *
+ * It does nothing unless moviedb.trend.file is set. Then, once every test of the class has run, their timings are
+ * added to that file and checked against the runs before them:
+ * moviedb.trend.window - how many earlier runs the baseline is taken over (default 10)
+ * moviedb.trend.history - how many runs to keep in the file (default 100)
+ * moviedb.trend.threshold - how far above its baseline, as a share of it, a figure may go (default 0.5)
+ * moviedb.trend.minMillis - how many milliseconds above its baseline a figure must also be to count (default 20)
+ * moviedb.trend.fail - set to true to fail the class on a regression rather than only print it (default false)
+ */
+public class TimingTrendRule implements TestRule {
+
+    private final TimingRecorder recorder = new TimingRecorder();
+
+    /**
+     * The rule that times each test, to be used as a @Rule of the same class.
+     */
+    public TestRule timer()
+    {
+        return new TestWatcher() {
+
+            @Override
+            protected void starting(Description description) {
+                recorder.testStarted(description);
+            }
+
+            @Override
+            protected void failed(Throwable error, Description description) {
+                recorder.testFailure(new Failure(description, error));
+            }
+
+            @Override
+            protected void skipped(AssumptionViolatedException error, Description description) {
+                recorder.testAssumptionFailure(new Failure(description, error));
+            }
+
+            @Override
+            protected void finished(Description description) {
+                recorder.testFinished(description);
+            }
+        };
+    }
+
+    @Override
+    public Statement apply(final Statement base, Description description)
+    {
+        return new Statement() {
+
+            @Override
+            public void evaluate() throws Throwable {
+
+                String trendFile = System.getProperty("moviedb.trend.file");
+                long run = System.currentTimeMillis();
+
+                base.evaluate();
+
+                if (trendFile != null) {
+                    checkTrend(recorder.entries(run, RequestTimings.allClients()), new File(trendFile));
+                }
+            }
+        };
+    }
+
+    /**
+     * Compares the run with the trend file and adds it there. Regressions are printed, and thrown as a failure of the
+     * class if moviedb.trend.fail is set.
+     */
+    private static void checkTrend(List<TimingTrend.Entry> run, File file)
+    {
+        int window = Integer.getInteger("moviedb.trend.window", 10);
+
+        List<String> regressions;
+        try {
+            TimingTrend trend = new TimingTrend(file, window, Integer.getInteger("moviedb.trend.history", 100));
+
+            regressions = trend.findRegressions(run,
+                    Double.parseDouble(System.getProperty("moviedb.trend.threshold", "0.5")),
+                    Double.parseDouble(System.getProperty("moviedb.trend.minMillis", "20")));
+
+            System.out.println("timing trend: " + run.size() + " tests added to " + file + ", compared with " + Math.min(trend.getRunCount(), window) + " earlier runs");
+            trend.append(run);
+        }
+        catch (IOException ex) {
+            System.err.println("Could not update the timing trend in " + file + ": " + ex.getMessage());
+            return;
+        }
+
+        if (regressions.isEmpty()) {
+            return;
+        }
+
+        StringBuilder message = new StringBuilder("Tests slower than their baseline:");
+        for (String regression : regressions) {
+            message.append("\n  ").append(regression);
+        }
+        System.out.println(message);
+
+        if (Boolean.getBoolean("moviedb.trend.fail")) {
+            throw new AssertionError(message.toString());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package Weeter;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.execchain.ClientExecChain;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Sits directly on the client's network exchange and counts response body bytes as they come off the wire, before
+ * any decompression, into a {@link TransferStats}.
+ *
+ * Its {@link DecodedBytesInterceptor} counts the same bodies again as the caller reads them, after the client has
+ * decompressed them, so the two can be compared.
+ */
+class TransferCountingExec implements ClientExecChain {
+
+    private final ClientExecChain requestExecutor;
+    private final TransferStats stats;
+
+    TransferCountingExec(ClientExecChain requestExecutor, TransferStats stats)
+    {
+        this.requestExecutor = requestExecutor;
+        this.stats = stats;
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRoute route, HttpRequestWrapper request, HttpClientContext context,
+                                         HttpExecutionAware execAware) throws IOException, HttpException
+    {
+        CloseableHttpResponse response = requestExecutor.execute(route, request, context, execAware);
+
+        TransferStats.Counts[] counters = stats.countersFor(TransferStats.endpointOf(request.getURI().getRawPath()), RequestTag.current());
+
+        HttpEntity entity = response.getEntity();
+        boolean compressed = entity != null && entity.getContentEncoding() != null;
+        for (TransferStats.Counts counts : counters) {
+            counts.addNetworkResponse(compressed);
+        }
+
+        if (entity != null) {
+            response.setEntity(new CountingEntity(entity, counters, true));
+        }
+        return response;
+    }
+
+    /**
+     * Counts the bytes of every response body the caller reads. It has to run after the client's own
+     * ResponseContentEncoding, so it must be added with addInterceptorLast.
+     */
+    static class DecodedBytesInterceptor implements HttpResponseInterceptor {
+
+        private final TransferStats stats;
+
+        DecodedBytesInterceptor(TransferStats stats)
+        {
+            this.stats = stats;
+        }
+
+        @Override
+        public void process(HttpResponse response, HttpContext context)
+        {
+            HttpRequest request = HttpCoreContext.adapt(context).getRequest();
+            String path = request instanceof HttpUriRequest
+                    ? ((HttpUriRequest) request).getURI().getRawPath()
+                    : URI.create(request.getRequestLine().getUri()).getRawPath();
+
+            TransferStats.Counts[] counters = stats.countersFor(TransferStats.endpointOf(path), RequestTag.current());
+            for (TransferStats.Counts counts : counters) {
+                counts.addResponse();
+            }
+
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                response.setEntity(new CountingEntity(entity, counters, false));
+            }
+        }
+    }
+}
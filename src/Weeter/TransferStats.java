@@ -0,0 +1,172 @@
+package Weeter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the response body bytes a client moves, both as they came over the wire (compressed, if the server
+ * compressed them) and as they were handed to the reader after decoding, in total, per endpoint and per
+ * {@link RequestTag}.
+ *
+ * Endpoints are the request path with every numeric segment after the API version replaced by {id}, such as
+ * /3/person/{id}/changes. Responses answered from the cache or a cassette count as decoded bytes but move nothing
+ * over the wire. Bytes are counted as they are read, so a body the caller never reads is only counted once the
+ * client has consumed it.
+ */
+public class TransferStats {
+
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("(?<!^)/\\d+(?=/|$)");
+    private static final String UNTAGGED = "(untagged)";
+
+    private final Counts total = new Counts();
+    private final ConcurrentHashMap<String, Counts> byEndpoint = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counts> byTag = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the endpoint a request path belongs to.
+     */
+    public static String endpointOf(String path)
+    {
+        return path == null || path.isEmpty() ? "/" : NUMERIC_SEGMENT.matcher(path).replaceAll("/{id}");
+    }
+
+    /**
+     * Returns the counters every response to this endpoint and tag adds to: the total, the endpoint's and the tag's.
+     */
+    Counts[] countersFor(String endpoint, String tag)
+    {
+        return new Counts[] {total, counts(byEndpoint, endpoint), counts(byTag, tag == null ? UNTAGGED : tag)};
+    }
+
+    public Counts getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * The counts of each endpoint, in order of endpoint.
+     */
+    public Map<String, Counts> getByEndpoint()
+    {
+        return new TreeMap<>(byEndpoint);
+    }
+
+    /**
+     * The counts of each request tag, in order of tag.
+     */
+    public Map<String, Counts> getByTag()
+    {
+        return new TreeMap<>(byTag);
+    }
+
+    /**
+     * One line for the total, then one per endpoint and one per tag.
+     */
+    public String summary()
+    {
+        StringBuilder result = new StringBuilder("total: ").append(total);
+        for (Map.Entry<String, Counts> entry : getByEndpoint().entrySet()) {
+            result.append("\n  endpoint ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        for (Map.Entry<String, Counts> entry : getByTag().entrySet()) {
+            result.append("\n  tag ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return result.toString();
+    }
+
+    private static Counts counts(ConcurrentHashMap<String, Counts> map, String name)
+    {
+        Counts counts = map.get(name);
+        if (counts == null) {
+            Counts created = new Counts();
+            counts = map.putIfAbsent(name, created);
+            if (counts == null) {
+                counts = created;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * The responses and body bytes counted for one total, endpoint or tag.
+     */
+    public static class Counts {
+
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder networkResponses = new LongAdder();
+        private final LongAdder compressedResponses = new LongAdder();
+        private final LongAdder wireBytes = new LongAdder();
+        private final LongAdder decodedBytes = new LongAdder();
+
+        void addResponse()
+        {
+            responses.increment();
+        }
+
+        void addNetworkResponse(boolean compressed)
+        {
+            networkResponses.increment();
+            if (compressed) {
+                compressedResponses.increment();
+            }
+        }
+
+        void addWireBytes(long bytes)
+        {
+            wireBytes.add(bytes);
+        }
+
+        void addDecodedBytes(long bytes)
+        {
+            decodedBytes.add(bytes);
+        }
+
+        /**
+         * How many responses were handed to the caller, wherever they came from.
+         */
+        public long getResponses()
+        {
+            return responses.sum();
+        }
+
+        /**
+         * How many responses came over the network rather than from the cache or a cassette.
+         */
+        public long getNetworkResponses()
+        {
+            return networkResponses.sum();
+        }
+
+        /**
+         * How many of the responses from the network had a compressed body.
+         */
+        public long getCompressedResponses()
+        {
+            return compressedResponses.sum();
+        }
+
+        public long getWireBytes()
+        {
+            return wireBytes.sum();
+        }
+
+        public long getDecodedBytes()
+        {
+            return decodedBytes.sum();
+        }
+
+        @Override
+        public String toString()
+        {
+            long wire = getWireBytes();
+            long decoded = getDecodedBytes();
+
+            return String.format("%d responses (%d from the network, %d compressed), %d wire bytes, %d decoded bytes%s",
+                    getResponses(), getNetworkResponses(), getCompressedResponses(), wire, decoded,
+                    wire == 0 ? "" : String.format(", %.1fx", decoded / (double) wire));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package Weeter;
+
+/**
+ * Whether a response matched a {@link ResponseSpec}, and if not, the first thing about it that did not.
+ */
+public class ValidationResult {
+
+    private final int statusCode;
+    private final String location;
+    private final String failure;
+
+    public ValidationResult(int statusCode, String location, String failure)
+    {
+        this.statusCode = statusCode;
+        this.location = location;
+        this.failure = failure;
+    }
+
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    public boolean passed()
+    {
+        return failure == null;
+    }
+
+    /**
+     * The path into the body where the first failure was found, such as $.changes[3], or null if the response passed
+     * or failed on its status code.
+     */
+    public String getLocation()
+    {
+        return location;
+    }
+
+    /**
+     * What was wrong, such as is missing "key", or null if the response passed.
+     */
+    public String getFailure()
+    {
+        return failure;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (failure == null) {
+            return "status " + statusCode + ": passed";
+        }
+        return "status " + statusCode + ": " + (location == null ? "" : location + " ") + failure;
+    }
+}